@@ -0,0 +1,57 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import main.utils.LoggingUtils;
+
+/**
+ * Runs the pipelines of a list of projects on a shared, bounded worker pool.
+ *
+ * Projects are admitted in the order in which they are listed (FIFO): every worker
+ * takes the next pending project as soon as it completes the previous one.
+ * */
+public class BatchManager {
+
+	private final List<String> projects;
+	private final String output;
+	private final String proportionMethod;
+	private final ExecutorService pool;
+
+	public BatchManager(List<String> projects, String output, String proportionMethod, ExecutorService pool) {
+		this.projects = projects;
+		this.output = output;
+		this.proportionMethod = proportionMethod;
+		this.pool = pool;
+	}
+
+	/**
+	 * Submits every project pipeline and waits for their completion.
+	 * A failing project does not stop the others.
+	 *
+	 * @return : number of projects whose analysis failed
+	 * */
+	public int run() throws InterruptedException {
+		List<Future<String>> results = new ArrayList<>();
+		for(String project: projects){
+			results.add(pool.submit(new Pipeline(project, output, proportionMethod, pool)));
+		}
+
+		int failed = 0;
+		for(int i=0; i<results.size(); i++){
+			try {
+				results.get(i).get();
+			} catch (ExecutionException e) {
+				LoggingUtils.logString("Analysis failed for project: ", projects.get(i));
+				LoggingUtils.logException(e);
+				failed++;
+			}
+		}
+
+		LoggingUtils.logInt("Number of projects analyzed: ", projects.size() - failed);
+		return failed;
+	}
+}
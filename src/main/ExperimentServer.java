@@ -0,0 +1,267 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import main.dataset.control.DatasetManager;
+import main.dataset.control.RunContext;
+import main.dataset.entity.FileMetadata;
+import main.training.control.WekaManager;
+import main.training.entity.Configuration;
+import main.training.entity.Fold;
+import main.utils.InstancesManager;
+import main.utils.LoggingUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+import weka.core.OptionHandler;
+import weka.core.Utils;
+
+/**
+ * Starting class of the experiment server.
+ *
+ * The project is mined and its instances and folds are built once: they stay in memory, with the results computed on
+ * the folds (sampled training sets, predictions), while experiments are run on them from a local socket.
+ * The protocol is line-based, one JSON object per line. An experiment selects the configurations of the grid by
+ * classifier, sampling, selection and sensitivity ("*" or missing: any, "none": not applied), optionally replaces the
+ * classifier options, and selects the folds by number of training releases (from/to, inclusive):
+ * 		{"classifier": "RandomForest", "sampling": "none", "options": "-I 50", "from": 2, "to": 4}
+ * Every result is written back as soon as it is evaluated, then a line with type "end" closes the experiment.
+ * Commands: {"command": "list"} (configurations and folds), {"command": "reset"} (drops the cached fold results),
+ * {"command": "quit"} (closes the connection).
+ * Arguments: project, output path, port (default 9090).
+ * */
+public class ExperimentServer {
+
+	private static final int DEFAULT_PORT = 9090;
+	private static final String ANY = "*";
+	private static final String NONE = "none";
+
+	private final WekaManager weka;
+	private final List<Instances> sets;
+	private List<Fold> folds;
+
+	private ExperimentServer(WekaManager weka, List<Instances> sets) {
+		this.weka = weka;
+		this.sets = sets;
+		this.folds = weka.prepareFolds(sets);
+	}
+
+	public static void main(String[] args) {
+		LoggingUtils.setLogger(Logger.getLogger("experiments"));
+
+		if(args.length < 2){
+			LoggingUtils.logString("Usage: ExperimentServer <project> <output path> [port]", "");
+			System.exit(-1);
+		}
+
+		String project = args[0];
+		String output = args[1];
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+
+		ExecutorService pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try(ServerSocket server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+			//mined once: every experiment reuses the dataset
+			RunContext context = RunContext.forProject(project, output, pool);
+			Map<String, List<FileMetadata>> dataset = new DatasetManager(context).getDataset();
+			List<Instances> sets = InstancesManager.getInstance().getDatasetPerRelease(project, dataset);
+
+			ExperimentServer experiments = new ExperimentServer(new WekaManager(pool), sets);
+			LoggingUtils.logString("Experiment server listening on port: ", String.valueOf(port));
+
+			while(!Thread.currentThread().isInterrupted()){
+				try(Socket client = server.accept()){ //one client at a time: an experiment uses the whole pool
+					experiments.serve(client);
+				} catch (IOException e) { //the client went away: wait for the next one
+					LoggingUtils.logException(e);
+				}
+			}
+
+		} catch (Exception e) {
+			LoggingUtils.logException(e);
+			System.exit(-1);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs the requests of a client until it quits or closes the connection.
+	 * */
+	private void serve(Socket client) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+		Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+
+		String line;
+		while((line = in.readLine()) != null){
+			if(line.trim().isEmpty()){
+				continue;
+			}
+
+			try {
+				JSONObject request = new JSONObject(line);
+				String command = request.optString("command", "run");
+
+				if(command.equals("quit")){
+					break;
+				}else if(command.equals("list")){
+					list(out);
+				}else if(command.equals("reset")){
+					folds = weka.prepareFolds(sets); //the cached results are dropped with the old folds
+					write(out, new JSONObject().put("type", "end").put("results", 0));
+				}else if(command.equals("run")){
+					run(request, out);
+				}else{
+					throw new IllegalArgumentException("Invalid command: " + command);
+				}
+
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (JSONException | IllegalArgumentException e) { //invalid request: the connection stays open
+				write(out, new JSONObject().put("type", "error").put("message", e.getMessage()));
+			} catch (Exception e) {
+				LoggingUtils.logException(e);
+				write(out, new JSONObject().put("type", "error").put("message", String.valueOf(e.getMessage())));
+			}
+		}
+	}
+
+	/**
+	 * Evaluates the configurations and folds selected by the request, writing every result as soon as it is evaluated.
+	 * */
+	private void run(JSONObject request, Writer out) throws Exception {
+		List<Configuration> configs = selectConfigurations(request);
+
+		int from = request.optInt("from", 1);
+		int to = request.optInt("to", folds.size());
+		if(from < 1 || to > folds.size() || from > to){
+			throw new IllegalArgumentException("Invalid fold range: training releases from 1 to " + folds.size());
+		}
+
+		long start = System.currentTimeMillis();
+		weka.setResultListener(result -> write(out, toJSON(result).put("type", "result")));
+		List<Configuration> results;
+		try {
+			results = weka.evaluate(configs, folds, from - 1, to);
+		} finally {
+			weka.setResultListener(null);
+		}
+
+		write(out, new JSONObject().put("type", "end")
+				.put("results", results.size())
+				.put("millis", System.currentTimeMillis() - start));
+
+		LoggingUtils.logString("Experiment completed: ", request + ", " + results.size() + " results");
+	}
+
+	/**
+	 * Selects the configurations of the grid matching the request, with the classifier options replaced if requested.
+	 * */
+	private List<Configuration> selectConfigurations(JSONObject request) throws Exception {
+		String options = request.optString("options", null);
+
+		List<Configuration> selected = new ArrayList<>();
+		for(Configuration config: weka.getConfigurations()){
+			if(!matches(request.optString("classifier", ANY), config.getClassifierName()) ||
+					!matches(request.optString("sampling", ANY), config.getSamplingMethod()) ||
+					!matches(request.optString("selection", ANY), config.getFeatSelectionMethod()) ||
+					!matches(request.optString("sensitivity", ANY), config.getSensitivityMethod())){
+				continue;
+			}
+
+			if(options == null){
+				selected.add(config);
+			}else{
+				Classifier classifier = AbstractClassifier.makeCopy(config.getClassifier());
+				((OptionHandler) classifier).setOptions(Utils.splitOptions(options));
+
+				selected.add(new Configuration(classifier, config.getFeatSelection(), config.getSampling(), config.getSensitivity()));
+			}
+		}
+
+		if(selected.isEmpty()){
+			throw new IllegalArgumentException("No configuration matches the request");
+		}
+
+		return selected;
+	}
+
+	private static boolean matches(String requested, String value) {
+		if(requested.equals(ANY)){
+			return true;
+		}
+		if(requested.equalsIgnoreCase(NONE)){
+			return value == null;
+		}
+
+		return requested.equalsIgnoreCase(value);
+	}
+
+	private void list(Writer out) {
+		for(Configuration config: weka.getConfigurations()){
+			write(out, toJSON(config).put("type", "configuration"));
+		}
+
+		write(out, new JSONObject().put("type", "end")
+				.put("results", weka.getConfigurations().size())
+				.put("folds", folds.size()));
+	}
+
+	private static JSONObject toJSON(Configuration config) {
+		JSONObject json = new JSONObject()
+				.put("classifier", config.getClassifierName())
+				.put("sampling", getMethod(config.getSamplingMethod()))
+				.put("selection", getMethod(config.getFeatSelectionMethod()))
+				.put("sensitivity", getMethod(config.getSensitivityMethod()));
+
+		if(config.getNumTrainingReleases() > 0){
+			JSONObject performances = new JSONObject();
+			for(Map.Entry<String, Double> performance: config.getPerformances().entrySet()){
+				Double value = performance.getValue();
+				performances.put(performance.getKey(), value == null || value.isNaN() || value.isInfinite() ?
+						JSONObject.NULL : value); //JSON has no NaN, e.g. the precision without positive predictions
+			}
+
+			json.put("trainingReleases", config.getNumTrainingReleases())
+					.put("performances", performances);
+		}
+
+		return json;
+	}
+
+	private static String getMethod(String method) {
+		return method == null ? NONE : method;
+	}
+
+	/**
+	 * Writes a line: the results are written by the evaluation threads.
+	 * */
+	private static void write(Writer out, JSONObject line) {
+		synchronized (out) {
+			try {
+				out.write(line.toString());
+				out.write('\n');
+				out.flush();
+			} catch (IOException e) { //the client went away: the experiment still completes
+				LoggingUtils.logException(e);
+			}
+		}
+	}
+}
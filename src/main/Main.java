@@ -2,17 +2,11 @@ package main;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.LogManager;
 
-import main.dataset.control.DatasetManager;
-import main.dataset.control.DatasetManagerITT;
-import main.dataset.entity.FileMetadata;
-import main.training.control.WekaManager;
-import main.training.control.WekaManagerITT;
-import main.training.entity.Configuration;
-import main.utils.CSVManager;
 import main.utils.LoggingUtils;
 
 import java.util.logging.*;
@@ -23,123 +17,49 @@ import java.util.logging.*;
 public class Main {
 
 	private static String project; //change the name on the properties to change the project to analyze
+	private static List<String> projects; //list of projects to analyze in batch mode (empty for single project)
 	private static String output;
+	private static int threads; //size of the worker pool
 
 	/**
 	 * Main method.
 	 *
 	 * Calls the controllers to create the dataset and uses it to train the ML models.
+	 * If a list of projects is configured, every project is analyzed on a shared worker pool.
 	 * */
 	public static void main(String[] args) {
 
 		try {
             manageProperties();
 
-			//if project is BOOKKEEPER: Jira support ended on 2017-10-17
-            if(project.equals("BOOKKEEPER")){
-                System.setProperty("date_limit", "2017-10-17");
-            }else{
-                System.setProperty("date_limit", LocalDate.now().toString());
+            String proportionMethod = System.getProperty("proportion_method");
+            ExecutorService pool = new ForkJoinPool(threads);
+
+            int failed = 0;
+            try {
+                if(projects.isEmpty()){
+                    new Pipeline(project, output, proportionMethod, pool).call();
+                }else{
+                    failed = new BatchManager(projects, output, proportionMethod, pool).run();
+                }
+            } finally {
+                pool.shutdown();
             }
 
-            String proportionMethod = System.getProperty("proportion_method");
-            if(proportionMethod.equals("TrainingTest")){
-                trainingTestAnalysis();
-            }else if(proportionMethod.equals("Incremental")){
-                incrementalAnalysis();
-            } else {
-                throw new IOException("Invalid Proportion method.");
+            if(failed != 0){
+                System.exit(-1);
             }
 
+		} catch (InterruptedException e) {
+			LoggingUtils.logException(e);
+			Thread.currentThread().interrupt();
+			System.exit(-1);
 		} catch (Exception e) {
 			LoggingUtils.logException(e);
 			System.exit(-1);
 		}
 	}
 
-    private static void incrementalAnalysis() throws Exception {
-        //dataset construction
-        DatasetManager dm = new DatasetManager(project);
-        Map<String, List<FileMetadata>> dataset = dm.getDataset();
-
-        //dataset on csv
-        String datasetPath = CSVManager.getInstance().getDataset(output, project, dataset);
-
-        //pre-configuration
-        Map<String, Integer> instancesPerRelease = getNumberOfFilesPerRelease(dataset);
-
-        WekaManager weka = new WekaManager();
-        //training
-        List<Configuration> wekaOutput = weka.setWeka(datasetPath, new ArrayList<>(instancesPerRelease.values()));
-
-        //output
-        CSVManager.getInstance().getWekaResult(output, project, wekaOutput);
-    }
-
-    private static void trainingTestAnalysis() throws Exception {
-        //trainingSets construction
-        DatasetManagerITT dmITT = new DatasetManagerITT(project);
-        List<Map<String, List<FileMetadata>>> trainingSets = dmITT.getDatasetITT();
-        trainingSets.remove(trainingSets.size()-1);
-
-        //testSets construction
-        DatasetManager dm = new DatasetManager(project);
-        Map<String, List<FileMetadata>> testSets = dm.getDataset();
-
-        //dataset creation
-        int idx = 1;
-        String trainingSetPath;
-        Map<String, List<FileMetadata>> testSet;
-        String testSetPath;
-        List<Configuration> wekaOutput = new ArrayList<>();
-        for(Map<String, List<FileMetadata>> trainingSet: trainingSets){ //Walk forward
-            testSet = getTestSet(testSets, trainingSet);
-
-            trainingSetPath = CSVManager.getInstance().getDataset(output, project + "ITT_Training" + idx, trainingSet);
-            testSetPath = CSVManager.getInstance().getDataset(output, project + "ITT_Test" + idx, testSet);
-
-            //training
-            WekaManagerITT weka = new WekaManagerITT();
-            wekaOutput.addAll(weka.setWekaITT(trainingSetPath, testSetPath, idx));
-
-            idx++;
-        }
-
-        //output
-        CSVManager.getInstance().getWekaResult(output, project + "ITT", wekaOutput);
-    }
-
-    private static Map<String, List<FileMetadata>> getTestSet(Map<String, List<FileMetadata>> testSets, Map<String, List<FileMetadata>> trainingSet) {
-
-        for(String release: trainingSet.keySet()){
-            testSets.remove(release);
-        }
-
-        Map<String, List<FileMetadata>> temp = new LinkedHashMap<>(testSets);
-
-        boolean first = true;
-        for(String remRelease: testSets.keySet()){
-            if(first){
-                first = false;
-                continue;
-            }
-
-            temp.remove(remRelease);
-        }
-
-        return temp;
-    }
-
-    private static Map<String, Integer> getNumberOfFilesPerRelease(Map<String, List<FileMetadata>> dataset) {
-		Map<String, Integer> res = new LinkedHashMap<>();
-
-		for(Map.Entry<String, List<FileMetadata>> entry: dataset.entrySet()){
-			res.put(entry.getKey(), entry.getValue().size());
-		}
-
-		return res;
-	}
-
     private static void manageProperties() throws IOException {
 
         //System configuration
@@ -159,8 +79,31 @@ public class Main {
 		project = prop.getProperty("project");
 		output = prop.getProperty("output_path");
 
-		System.setProperty("project_name", prop.getProperty("project"));
+		projects = new ArrayList<>();
+		String projectList = prop.getProperty("projects", "");
+		for(String proj: projectList.split(",")){
+			if(!proj.trim().isEmpty()){
+				projects.add(proj.trim());
+			}
+		}
+
+		threads = Integer.parseInt(prop.getProperty("threads", "0"));
+		if(threads <= 0){ //use every available core
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+
 		System.setProperty("proportion_method", prop.getProperty("proportion"));
+		System.setProperty("cpu_budget", prop.getProperty("cpu_budget", "0"));
+		System.setProperty("batch_size", prop.getProperty("batch_size", "100"));
+		System.setProperty("write_datasets", prop.getProperty("write_datasets", "true"));
+		System.setProperty("updateable_training", prop.getProperty("updateable_training", "false"));
+		System.setProperty("prediction_store", prop.getProperty("prediction_store", "false"));
+		System.setProperty("model_cache_size", prop.getProperty("model_cache_size", "0"));
+		System.setProperty("racing_metric", prop.getProperty("racing_metric", ""));
+		System.setProperty("racing_folds", prop.getProperty("racing_folds", "3"));
+		System.setProperty("worker_processes", prop.getProperty("worker_processes", "0"));
+		System.setProperty("worker_heap", prop.getProperty("worker_heap", ""));
+		System.setProperty("out_of_core", prop.getProperty("out_of_core", "false"));
 	}
 
 	/**
@@ -170,7 +113,7 @@ public class Main {
 		InputStream stream = Main.class.getClassLoader().getResourceAsStream("logging.properties");
 
 		LogManager.getLogManager().readConfiguration(stream);
-		Logger logger = Logger.getLogger(project);
+		Logger logger = Logger.getLogger(projects.isEmpty() ? project : "batch");
 
 		LoggingUtils.setLogger(logger);
 	}
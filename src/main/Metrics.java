@@ -0,0 +1,67 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import main.training.control.MetricsEngine;
+import main.training.entity.Predictions;
+import main.utils.CSVManager;
+import main.utils.LoggingUtils;
+import main.utils.PredictionStore;
+
+/**
+ * Starting class of the post-hoc analysis.
+ *
+ * Computes the metrics and their bootstrap confidence intervals from a prediction store written by the Weka analysis,
+ * without training any classifier.
+ * Arguments: path of the store, number of bootstrap replicas (default 1000), confidence level (default 0.95).
+ * */
+public class Metrics {
+
+	private Metrics() { /**/ }
+
+	public static void main(String[] args) {
+		LoggingUtils.setLogger(Logger.getLogger("metrics"));
+
+		if(args.length == 0){
+			LoggingUtils.logString("Usage: Metrics <store path> [bootstrap replicas] [confidence]", "");
+			System.exit(-1);
+		}
+
+		String storePath = args[0];
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		double confidence = args.length > 2 ? Double.parseDouble(args[2]) : 0.95;
+
+		ExecutorService pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try {
+			List<Predictions> predictions = PredictionStore.read(storePath);
+
+			MetricsEngine engine = new MetricsEngine(pool);
+			List<Map<String, Double>> metrics = new ArrayList<>();
+			List<Map<String, double[]>> intervals = new ArrayList<>();
+			for(Predictions record: predictions){
+				metrics.add(engine.computeMetrics(record));
+				intervals.add(engine.computeIntervals(record, iterations, confidence));
+			}
+
+			String output = storePath.replaceFirst("\\.bin$", "") + "_Metrics.csv";
+			CSVManager.getInstance().getMetricsResult(output, predictions, metrics, intervals);
+
+			LoggingUtils.logString("Metrics written to: ", output);
+
+		} catch (InterruptedException e) {
+			LoggingUtils.logException(e);
+			Thread.currentThread().interrupt();
+			System.exit(-1);
+		} catch (Exception e) {
+			LoggingUtils.logException(e);
+			System.exit(-1);
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import main.training.control.NeighbourSearchSelector;
+import main.utils.LoggingUtils;
+import weka.attributeSelection.AttributeSelection;
+import weka.attributeSelection.BestFirst;
+import weka.attributeSelection.CfsSubsetEval;
+import weka.classifiers.lazy.IBk;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Remove;
+
+/**
+ * Starting class of the benchmark of the nearest neighbour searches of IBk.
+ *
+ * The dataset (csv written by the analysis, or arff) is split in release order: the first part trains IBk, the rest
+ * is predicted. Every search is timed on all the attributes and on the attributes kept by the feature selection,
+ * and its predictions are compared with the ones of the linear search.
+ * Arguments: path of the dataset, number of neighbours (default 3), fraction of training instances (default 0.8).
+ * */
+public class NeighbourSearchBenchmark {
+
+	private static final String[] SEARCHES = {"Linear", "KDTree", "BallTree", "CoverTree"};
+	private static final int RUNS = 2; //the first run warms up the JVM
+
+	private NeighbourSearchBenchmark() { /**/ }
+
+	public static void main(String[] args) {
+		LoggingUtils.setLogger(Logger.getLogger("benchmark"));
+
+		if(args.length == 0){
+			LoggingUtils.logString("Usage: NeighbourSearchBenchmark <dataset path> [neighbours] [training fraction]", "");
+			System.exit(-1);
+		}
+
+		int k = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		double fraction = args.length > 2 ? Double.parseDouble(args[2]) : 0.8;
+
+		try {
+			Instances data = getFeatures(DataSource.read(args[0]));
+
+			int split = (int) (data.numInstances()*fraction);
+			Instances training = new Instances(data, 0, split);
+			Instances test = new Instances(data, split, data.numInstances() - split);
+
+			compare("All attributes", training, test, k);
+
+			int[] selected = selectAttributes(training);
+			compare("Selected attributes", keepAttributes(training, selected), keepAttributes(test, selected), k);
+
+		} catch (Exception e) {
+			LoggingUtils.logException(e);
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Times every search on a training and test set and logs the results.
+	 * */
+	private static void compare(String setting, Instances training, Instances test, int k) throws Exception {
+		LoggingUtils.logString("NEIGHBOUR SEARCH BENCHMARK: ", setting + ", " + training.numInstances() + " training instances, " +
+				test.numInstances() + " test instances, " + (training.numAttributes() - 1) + " attributes, selected search " +
+				NeighbourSearchSelector.select(training).getClass().getSimpleName());
+
+		double[][] reference = null;
+		double linearTime = 0;
+		for(String search: SEARCHES){
+			long build = Long.MAX_VALUE;
+			long prediction = Long.MAX_VALUE;
+			double[][] distributions = null;
+
+			for(int run = 0; run < RUNS; run++){
+				IBk ibk = new IBk(k);
+				ibk.setNearestNeighbourSearchAlgorithm(NeighbourSearchSelector.create(search));
+
+				long start = System.nanoTime();
+				ibk.buildClassifier(training);
+				long built = System.nanoTime();
+
+				distributions = new double[test.numInstances()][];
+				for(int i=0; i<test.numInstances(); i++){
+					distributions[i] = ibk.distributionForInstance(test.instance(i));
+				}
+				long end = System.nanoTime();
+
+				build = Math.min(build, built - start);
+				prediction = Math.min(prediction, end - built);
+			}
+
+			double total = (build + prediction)/1e6;
+			if(reference == null){
+				reference = distributions;
+				linearTime = total;
+			}
+
+			LoggingUtils.logString(search + ": ", String.format("build %.1f ms, prediction %.1f ms, speed-up %.2f, ",
+					build/1e6, prediction/1e6, linearTime/total) +
+					"predictions different from linear search: " + countDifferences(reference, distributions));
+		}
+	}
+
+	private static int countDifferences(double[][] reference, double[][] distributions) {
+		int count = 0;
+		for(int i=0; i<reference.length; i++){
+			for(int c=0; c<reference[i].length; c++){
+				if(Math.abs(reference[i][c] - distributions[i][c]) > 1e-9){
+					count++;
+					break;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Keeps the numeric features and the class (last attribute), dropping the identification columns of the csv dataset.
+	 * */
+	private static Instances getFeatures(Instances data) throws Exception {
+		data.setClassIndex(data.numAttributes() - 1);
+
+		List<Integer> features = new ArrayList<>();
+		for(int i=0; i<data.numAttributes() - 1; i++){
+			if(data.attribute(i).isNumeric()){
+				features.add(i);
+			}
+		}
+		features.add(data.classIndex());
+
+		int[] attributes = new int[features.size()];
+		for(int i=0; i<attributes.length; i++){
+			attributes[i] = features.get(i);
+		}
+
+		return keepAttributes(data, attributes);
+	}
+
+	/**
+	 * Feature selection of the analysis (CFS with forward search).
+	 * */
+	private static int[] selectAttributes(Instances training) throws Exception {
+		AttributeSelection selection = new AttributeSelection();
+		selection.setEvaluator(new CfsSubsetEval());
+		selection.setSearch(new BestFirst());
+		selection.SelectAttributes(training);
+
+		return selection.selectedAttributes(); //includes the class
+	}
+
+	private static Instances keepAttributes(Instances data, int[] attributes) throws Exception {
+		Remove remove = new Remove();
+		remove.setAttributeIndicesArray(attributes);
+		remove.setInvertSelection(true);
+		remove.setInputFormat(data);
+
+		Instances reduced = Filter.useFilter(data, remove);
+		reduced.setClassIndex(reduced.numAttributes() - 1);
+
+		return reduced;
+	}
+}
@@ -0,0 +1,283 @@
+package main;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import main.dataset.control.DatasetManager;
+import main.dataset.control.DatasetManagerITT;
+import main.dataset.control.RunContext;
+import main.dataset.entity.FileMetadata;
+import main.training.control.TaskScheduler;
+import main.training.control.WekaManager;
+import main.training.control.WekaManagerITT;
+import main.training.control.WorkerPool;
+import main.utils.CSVManager;
+import main.utils.InstancesManager;
+import main.utils.LoggingUtils;
+import main.utils.ModelCache;
+import main.utils.PredictionStore;
+import main.utils.ReleaseStore;
+import main.utils.ResultsCheckpoint;
+import weka.core.Instances;
+
+/**
+ * Full analysis of a single project: dataset mining, CSV export and Weka evaluation.
+ * */
+public class Pipeline implements Callable<String> {
+
+	private static final String TIMINGS_FILE = "task_timings.properties"; //evaluation times of the previous runs
+	private static final String MODEL_CACHE = "model_cache"; //directory of the trained models
+
+	private final String project;
+	private final String output;
+	private final String proportionMethod;
+	private final ExecutorService pool;
+	private final boolean writeDatasets; //csv datasets are a side output: the analysis uses in-memory instances
+	private final boolean storePredictions; //predictions of every evaluation kept for post-hoc metrics
+	private final long modelCacheSize; //MB of trained models kept across runs, 0 to train every model
+	private final int workerProcesses; //JVMs evaluating the grid, 0 to evaluate it in this process
+	private final String workerHeap; //maximum heap of each worker process
+	private final boolean outOfCore; //releases read from disk one fold at a time
+
+	public Pipeline(String project, String output, String proportionMethod, ExecutorService pool) {
+		this.project = project;
+		this.output = output;
+		this.proportionMethod = proportionMethod;
+		this.pool = pool;
+		this.writeDatasets = Boolean.parseBoolean(System.getProperty("write_datasets", "true"));
+		this.storePredictions = Boolean.parseBoolean(System.getProperty("prediction_store", "false"));
+		this.modelCacheSize = Long.parseLong(System.getProperty("model_cache_size", "0"));
+		this.workerProcesses = Integer.parseInt(System.getProperty("worker_processes", "0"));
+		this.workerHeap = System.getProperty("worker_heap", "").trim();
+		this.outOfCore = Boolean.parseBoolean(System.getProperty("out_of_core", "false"));
+	}
+
+	/**
+	 * Runs the analysis of the project with the chosen proportion method.
+	 *
+	 * @return : name of the analyzed project
+	 * */
+	@Override
+	public String call() throws Exception {
+		RunContext context = RunContext.forProject(project, output, pool); //date limit and controllers of the run
+
+		if(proportionMethod.equals("TrainingTest")){
+			trainingTestAnalysis(context);
+		}else if(proportionMethod.equals("Incremental")){
+			incrementalAnalysis(context);
+		} else {
+			throw new IOException("Invalid Proportion method.");
+		}
+
+		LoggingUtils.logString("Analysis completed for project: ", project);
+		return project;
+	}
+
+    private void incrementalAnalysis(RunContext context) throws Exception {
+        //pre-configuration: releases in memory, or on disk for the out-of-core analysis
+        List<Instances> sets = null;
+        ReleaseStore releases = outOfCore ? new ReleaseStore(output, project) : null;
+        WekaManager weka = new WekaManager(pool);
+        try {
+            if(releases != null){ //the mined dataset is not referenced anymore once written
+                InstancesManager.getInstance().writeDatasetPerRelease(project, mineDataset(context), releases);
+            }else{
+                sets = InstancesManager.getInstance().getDatasetPerRelease(project, mineDataset(context));
+            }
+
+            //training: results saved as soon as they are evaluated, a restarted run resumes from them
+            try(ResultsCheckpoint checkpoint = new ResultsCheckpoint(output, project);
+                PredictionStore store = openPredictionStore(project, checkpoint);
+                WorkerPool workers = openWorkers()){
+
+                weka.setModelCache(openModelCache());
+                weka.setScheduler(new TaskScheduler(pool, output + TIMINGS_FILE));
+                weka.setPredictionStore(store);
+                weka.setCheckpoint(checkpoint);
+                weka.setWorkers(workers);
+                if(releases != null){
+                    weka.setWeka(releases);
+                }else{
+                    weka.setWeka(sets);
+                }
+                LoggingUtils.logString("Test instances predicted in batches by this process: ", String.valueOf(weka.getBatchPredictions()));
+
+                //output
+                checkpoint.complete();
+            }
+        } finally {
+            if(releases != null){ //also after a failure: a restarted run writes them again
+                releases.delete();
+            }
+        }
+
+        //configurations dropped by racing
+        if(!weka.getPrunedConfigurations().isEmpty()){
+            CSVManager.getInstance().getRacingReport(output, project, weka.getPrunedConfigurations());
+        }
+    }
+
+    /**
+     * Mines the dataset of the incremental analysis, written on csv if requested.
+     *
+     * @return : dataset filename and project releases
+     * */
+    private Map<String, List<FileMetadata>> mineDataset(RunContext context) throws Exception {
+        DatasetManager dm = new DatasetManager(context);
+        Map<String, List<FileMetadata>> dataset = dm.getDataset();
+
+        //dataset on csv
+        if(writeDatasets){
+            CSVManager.getInstance().getDataset(output, project, dataset);
+        }
+
+        return dataset;
+    }
+
+    private void trainingTestAnalysis(RunContext context) throws Exception {
+        //trainingSets construction
+        DatasetManagerITT dmITT = new DatasetManagerITT(context);
+        List<Map<String, List<FileMetadata>>> trainingSets = dmITT.getDatasetITT();
+        trainingSets.remove(trainingSets.size()-1);
+
+        //testSets construction: the mining session of the training sets is reused
+        DatasetManager dm = new DatasetManager(context, dmITT.getSession());
+        Map<String, List<FileMetadata>> testSets = dm.getDataset();
+
+        //dataset creation and training: results saved as soon as they are evaluated, a restarted run resumes from them
+        try(ResultsCheckpoint checkpoint = new ResultsCheckpoint(output, project + "ITT");
+            PredictionStore store = openPredictionStore(project + "ITT", checkpoint);
+            WorkerPool workers = openWorkers()){
+
+            trainingTestWalkForward(trainingSets, testSets, store, checkpoint, workers);
+
+            //output
+            checkpoint.complete();
+        }
+    }
+
+    /**
+     * Runs the walk-forward iterations concurrently on the pool: an iteration only needs its training set and its test release.
+     * The results are merged in iteration order when the checkpoint is completed.
+     * */
+    private void trainingTestWalkForward(List<Map<String, List<FileMetadata>>> trainingSets, Map<String, List<FileMetadata>> testSets,
+                                         PredictionStore store, ResultsCheckpoint checkpoint, WorkerPool workers) throws Exception {
+        List<Future<?>> iterations = new ArrayList<>();
+
+        int idx = 1;
+        for(Map<String, List<FileMetadata>> trainingSet: trainingSets){ //Walk forward
+            Map<String, List<FileMetadata>> testSet = getTestSet(testSets, trainingSet); //sequential: consumes the test sets
+
+            int iteration = idx;
+            iterations.add(pool.submit(() -> {
+                trainingTestIteration(iteration, trainingSet, testSet, store, checkpoint, workers);
+                return null;
+            }));
+
+            idx++;
+        }
+
+        try {
+            for(Future<?> iteration: iterations){
+                iteration.get();
+            }
+        } catch (ExecutionException e) {
+            for(Future<?> iteration: iterations){
+                iteration.cancel(true);
+            }
+
+            if(e.getCause() instanceof Exception){
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void trainingTestIteration(int idx, Map<String, List<FileMetadata>> trainingSet, Map<String, List<FileMetadata>> testSet,
+                                       PredictionStore store, ResultsCheckpoint checkpoint, WorkerPool workers) throws Exception {
+        if(writeDatasets){
+            CSVManager.getInstance().getDataset(output, project + "ITT_Training" + idx, trainingSet);
+            CSVManager.getInstance().getDataset(output, project + "ITT_Test" + idx, testSet);
+        }
+
+        Instances training = InstancesManager.getInstance().getDataset(project + "ITT_Training" + idx, trainingSet);
+        Instances test = InstancesManager.getInstance().getDataset(project + "ITT_Test" + idx, testSet);
+
+        //training: own manager, shared checkpoint and store
+        WekaManagerITT weka = new WekaManagerITT(pool);
+        weka.setPredictionStore(store);
+        weka.setModelCache(openModelCache());
+        weka.setScheduler(new TaskScheduler(pool, output + TIMINGS_FILE));
+        weka.setCheckpoint(checkpoint);
+        weka.setWorkers(workers);
+        weka.setWekaITT(training, test, idx);
+    }
+
+    /**
+     * Opens the prediction store of an analysis, if enabled.
+     *
+     * @param name : name of the analysis
+     * @param checkpoint : results of the analysis, the store is resumed with them
+     *
+     * @return : the store, null if the predictions are not kept
+     * */
+    private PredictionStore openPredictionStore(String name, ResultsCheckpoint checkpoint) throws IOException {
+        if(!storePredictions){
+            return null;
+        }
+
+        return new PredictionStore(output + name + "_Predictions.bin", checkpoint.isResumed());
+    }
+
+    /**
+     * Opens the cache of trained models, if enabled.
+     *
+     * @return : the cache, null if the models are not cached
+     * */
+    private ModelCache openModelCache() throws IOException {
+        if(modelCacheSize <= 0){
+            return null;
+        }
+
+        return new ModelCache(output + MODEL_CACHE, modelCacheSize*1024*1024);
+    }
+
+    /**
+     * Launches the worker processes of the evaluation, if enabled. The workers share the cache of trained models.
+     *
+     * @return : the workers, null if the grid is evaluated in this process
+     * */
+    private WorkerPool openWorkers() throws IOException {
+        if(workerProcesses <= 0){
+            return null;
+        }
+
+        return new WorkerPool(workerProcesses, workerHeap, modelCacheSize <= 0 ? null : output + MODEL_CACHE,
+                modelCacheSize*1024*1024);
+    }
+
+    private Map<String, List<FileMetadata>> getTestSet(Map<String, List<FileMetadata>> testSets, Map<String, List<FileMetadata>> trainingSet) {
+
+        for(String release: trainingSet.keySet()){
+            testSets.remove(release);
+        }
+
+        Map<String, List<FileMetadata>> temp = new LinkedHashMap<>(testSets);
+
+        boolean first = true;
+        for(String remRelease: testSets.keySet()){
+            if(first){
+                first = false;
+                continue;
+            }
+
+            temp.remove(remRelease);
+        }
+
+        return temp;
+    }
+}
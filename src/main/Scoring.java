@@ -0,0 +1,199 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import main.dataset.control.DatasetManager;
+import main.dataset.control.LiveFilesManager;
+import main.dataset.control.RunContext;
+import main.dataset.entity.FileMetadata;
+import main.training.control.RiskScorer;
+import main.utils.InstancesManager;
+import main.utils.LoggingUtils;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import weka.classifiers.Classifier;
+import weka.classifiers.trees.RandomForest;
+import weka.core.SerializationHelper;
+
+/**
+ * Starting class of the defect-risk scoring service.
+ *
+ * The history of the project is mined once at start-up: the files of the current release stay in memory and every
+ * scored commit is applied to them with the same logic of the dataset mining, so a request only mines its own diff.
+ * The model is loaded from its file or, if missing, trained on the dataset of the analysis and saved for the next start.
+ * The service listens on the loopback interface: POST /score with commit=<id> (form body or query) applies the commit
+ * and returns the risk of the files touched by it, from the riskiest one. The commit must be a child of the last one
+ * applied (or mined), otherwise the request is rejected with 409; a commit already applied is scored again.
+ * Arguments: project, output path, port (default 8080), model file (default <output>/<project>_Scoring.model).
+ * */
+public class Scoring {
+
+	private static final int DEFAULT_PORT = 8080;
+
+	private Scoring() { /**/ }
+
+	public static void main(String[] args) {
+		LoggingUtils.setLogger(Logger.getLogger("scoring"));
+
+		if(args.length < 2){
+			LoggingUtils.logString("Usage: Scoring <project> <output path> [port] [model path]", "");
+			System.exit(-1);
+		}
+
+		String project = args[0];
+		String output = args[1];
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+		String modelPath = args.length > 3 ? args[3] : output + project + "_Scoring.model";
+
+		ExecutorService pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try {
+			RunContext context = RunContext.forProject(project, output, pool);
+			DatasetManager dm = new DatasetManager(context);
+
+			Classifier model = loadModel(project, dm, modelPath);
+			LiveFilesManager live = dm.getLiveFiles(); //mining session shared with the dataset of the model
+
+			RiskScorer scorer = new RiskScorer(model, project);
+
+			HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+			server.createContext("/score", exchange -> handle(exchange, context, live, scorer));
+			server.start(); //requests served one at a time: the state of the files is updated by every commit
+
+			LoggingUtils.logString("Scoring service listening on port: ", String.valueOf(port));
+
+		} catch (Exception e) {
+			LoggingUtils.logException(e);
+			pool.shutdown();
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Loads the scoring model, or trains it on the dataset of the analysis and saves it.
+	 * */
+	private static Classifier loadModel(String project, DatasetManager dm, String modelPath) throws Exception {
+		if(new File(modelPath).isFile()){
+			LoggingUtils.logString("Scoring model loaded from: ", modelPath);
+			return (Classifier) SerializationHelper.read(modelPath);
+		}
+
+		Map<String, List<FileMetadata>> dataset = dm.getDataset();
+		Classifier model = RiskScorer.train(new RandomForest(), InstancesManager.getInstance().getDataset(project, dataset));
+
+		SerializationHelper.write(modelPath, model);
+		LoggingUtils.logString("Scoring model trained and saved on: ", modelPath);
+
+		return model;
+	}
+
+	/**
+	 * Applies the commit of the request and scores the files it touches.
+	 * */
+	private static void handle(HttpExchange exchange, RunContext context, LiveFilesManager live, RiskScorer scorer) throws IOException {
+		try {
+			if(!"POST".equals(exchange.getRequestMethod())){ //the request changes the state of the files
+				exchange.getResponseHeaders().set("Allow", "POST");
+				reply(exchange, 405, new JSONObject().put("error", "Usage: POST /score with commit=<id>"));
+				return;
+			}
+
+			Map<String, String> parameters = getParameters(exchange.getRequestURI().getRawQuery());
+			parameters.putAll(getParameters(readBody(exchange)));
+
+			String commitId = parameters.get("commit");
+			if(commitId == null){
+				reply(exchange, 400, new JSONObject().put("error", "Usage: POST /score with commit=<id>"));
+				return;
+			}
+
+			long start = System.nanoTime();
+
+			RevCommit commit = context.getGitManager().getCommit(commitId);
+			if(commit == null){
+				reply(exchange, 404, new JSONObject().put("error", "Unknown commit: " + commitId));
+				return;
+			}
+
+			List<FileMetadata> touched;
+			try {
+				touched = live.applyCommit(commit);
+			} catch (IllegalStateException e) { //not the next commit of the history
+				reply(exchange, 409, new JSONObject().put("error", e.getMessage()).put("lastCommit", live.getLastCommit()));
+				return;
+			}
+			Map<String, Double> risks = scorer.score(touched, live.getCurrentRelease());
+
+			JSONArray files = new JSONArray();
+			for(Map.Entry<String, Double> risk: risks.entrySet()){
+				files.put(new JSONObject().put("file", risk.getKey()).put("risk", risk.getValue()));
+			}
+
+			reply(exchange, 200, new JSONObject()
+					.put("commit", commit.getName())
+					.put("release", live.getCurrentRelease())
+					.put("files", files)
+					.put("millis", (System.nanoTime() - start)/1e6));
+
+		} catch (Exception e) {
+			LoggingUtils.logException(e);
+			reply(exchange, 500, new JSONObject().put("error", String.valueOf(e.getMessage())));
+		}
+	}
+
+	private static Map<String, String> getParameters(String query) throws IOException {
+		Map<String, String> parameters = new HashMap<>();
+		if(query == null){
+			return parameters;
+		}
+
+		for(String pair: query.split("&")){
+			int separator = pair.indexOf('=');
+			if(separator > 0){
+				parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8.name()),
+						URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8.name()));
+			}
+		}
+
+		return parameters;
+	}
+
+	private static String readBody(HttpExchange exchange) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try(InputStream in = exchange.getRequestBody()){
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				body.write(buffer, 0, read);
+			}
+		}
+
+		return new String(body.toByteArray(), StandardCharsets.UTF_8).trim();
+	}
+
+	private static void reply(HttpExchange exchange, int status, JSONObject body) throws IOException {
+		byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream out = exchange.getResponseBody()){
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import main.training.control.WekaManager;
+import main.training.control.WorkerPool;
+import main.training.entity.Configuration;
+import main.training.entity.Fold;
+import main.utils.LoggingUtils;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Remove;
+
+/**
+ * Starting class of the consistency check of the worker processes.
+ *
+ * The folds of a dataset (csv written by the analysis, split by release) are evaluated by a pool of workers with
+ * more concurrent tasks than workers, for some rounds: the folds are completed, and evicted from every worker, while
+ * the other workers are busy. Every result is compared with the one of a single worker running the tasks one at a time.
+ * The check fails if a result differs, an evaluation fails or a worker is lost.
+ * Arguments: path of the dataset, number of workers (default 3), number of rounds (default 3).
+ * */
+public class WorkerPoolCheck {
+
+	private static final String[] CLASSIFIERS = {"NaiveBayes", "ZeroR", "IBk"}; //cheap: many folds done per second
+
+	private WorkerPoolCheck() { /**/ }
+
+	public static void main(String[] args) {
+		LoggingUtils.setLogger(Logger.getLogger("check"));
+
+		if(args.length == 0){
+			LoggingUtils.logString("Usage: WorkerPoolCheck <dataset path> [workers] [rounds]", "");
+			System.exit(-1);
+		}
+
+		int processes = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+		ExecutorService executor = Executors.newFixedThreadPool(2*processes); //more tasks than workers
+		int failures = 0;
+		try {
+			WekaManager weka = new WekaManager(executor);
+			List<Fold> folds = weka.prepareFolds(getReleases(DataSource.read(args[0])));
+			List<Integer> configs = getConfigurations(weka.getConfigurations());
+
+			Map<String, Map<String, Double>> reference;
+			try(WorkerPool single = new WorkerPool(1, "", null, 0)){
+				reference = evaluate(single, folds, configs, Executors.newSingleThreadExecutor());
+			}
+
+			try(WorkerPool pool = new WorkerPool(processes, "", null, 0)){
+				for(int round = 1; round <= rounds; round++){
+					Map<String, Map<String, Double>> results = evaluate(pool, folds, configs, executor);
+					for(Map.Entry<String, Map<String, Double>> result: results.entrySet()){
+						if(!result.getValue().equals(reference.get(result.getKey()))){
+							LoggingUtils.logString("Result different from the single worker: ", result.getKey());
+							failures++;
+						}
+					}
+					LoggingUtils.logString("Round completed: ", round + ", " + results.size() + " tasks, workers " + pool.size());
+				}
+
+				if(pool.size() < processes){
+					LoggingUtils.logInt("Worker processes lost: ", processes - pool.size());
+					failures++;
+				}
+			}
+
+		} catch (Exception e) {
+			LoggingUtils.logException(e);
+			failures++;
+		} finally {
+			executor.shutdownNow();
+		}
+
+		LoggingUtils.logString("WORKER POOL CHECK: ", failures == 0 ? "passed" : "failed, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : -1);
+	}
+
+	/**
+	 * Evaluates every configuration on every fold, the folds submitted in order so the first ones are done first.
+	 *
+	 * @return : performances per fold and configuration
+	 * */
+	private static Map<String, Map<String, Double>> evaluate(WorkerPool pool, List<Fold> folds, List<Integer> configs,
+															 ExecutorService executor) throws Exception {
+		Map<String, Future<Configuration>> futures = new LinkedHashMap<>();
+		for(Fold fold: folds){
+			pool.expect(fold, configs.size());
+			for(int config: configs){
+				futures.put(fold.getNumTrainingReleases() + "|" + config,
+						executor.submit(() -> pool.evaluate(config, fold, false).getConfiguration()));
+			}
+		}
+
+		Map<String, Map<String, Double>> results = new LinkedHashMap<>();
+		for(Map.Entry<String, Future<Configuration>> future: futures.entrySet()){
+			results.put(future.getKey(), future.getValue().get().getPerformances());
+		}
+
+		return results;
+	}
+
+	/**
+	 * @return : grid indexes of the plain configurations of the cheap classifiers
+	 * */
+	private static List<Integer> getConfigurations(List<Configuration> grid) {
+		List<Integer> configs = new ArrayList<>();
+		for(int i=0; i<grid.size(); i++){
+			Configuration config = grid.get(i);
+			for(String classifier: CLASSIFIERS){
+				if(classifier.equals(config.getClassifierName()) && config.getSamplingMethod() == null &&
+						config.getFeatSelectionMethod() == null){
+					configs.add(i);
+				}
+			}
+		}
+
+		return configs;
+	}
+
+	/**
+	 * Splits the dataset by release, keeping the numeric features and the class (last attribute).
+	 * */
+	private static List<Instances> getReleases(Instances data) throws Exception {
+		Attribute version = data.attribute("Version");
+
+		List<Integer> features = new ArrayList<>();
+		for(int i=0; i<data.numAttributes() - 1; i++){
+			if(data.attribute(i).isNumeric()){
+				features.add(i);
+			}
+		}
+		features.add(data.numAttributes() - 1);
+
+		int[] attributes = new int[features.size()];
+		for(int i=0; i<attributes.length; i++){
+			attributes[i] = features.get(i);
+		}
+
+		Remove remove = new Remove();
+		remove.setAttributeIndicesArray(attributes);
+		remove.setInvertSelection(true);
+		remove.setInputFormat(data);
+		Instances reduced = Filter.useFilter(data, remove);
+
+		Map<String, Instances> releases = new LinkedHashMap<>(); //in release order
+		for(int i=0; i<data.numInstances(); i++){
+			String release = data.instance(i).stringValue(version);
+			releases.computeIfAbsent(release, k -> new Instances(reduced, 0)).add(reduced.instance(i));
+		}
+
+		return new ArrayList<>(releases.values());
+	}
+}
@@ -6,6 +6,7 @@ import java.util.*;
 
 import main.dataset.entity.Bug;
 import main.dataset.entity.FileMetadata;
+import main.dataset.entity.MiningSession;
 import main.utils.LoggingUtils;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -18,14 +19,47 @@ import org.eclipse.jgit.revwalk.RevCommit;
 public class DatasetManager {
 	
 	protected final String project;
+	protected final RunContext context;
 	protected Map<String, LocalDate> releases;
 	protected List<Bug> bugs;
 	protected Map<RevCommit, LocalDate> commits;
+	protected MiningSession session;
 
-    public DatasetManager(String projectName) {
-		this.project = projectName;
+    public DatasetManager(RunContext context) {
+		this.project = context.getProject();
+		this.context = context;
     }
 
+	/**
+	 * Creates a dataset manager that consumes an already mined session of the project.
+	 *
+	 * @param context : context of the run that mined the session
+	 * @param session : result of a previous mining of the project
+	 * */
+	public DatasetManager(RunContext context, MiningSession session) {
+		this(context);
+		this.session = session;
+	}
+
+	/**
+	 * Retrieves the mining session of the project: Jira, Git and releases are analyzed only the first time.
+	 *
+	 * @return : mining session shared by every dataset built on the project
+	 * */
+	public MiningSession getSession() throws GitAPIException, IOException {
+		if(session == null){
+			retrieveFromJira();
+
+			retrieveFromGit();
+
+			Map<String, Map<RevCommit, LocalDate>> cmPerRelease = manageReleases();
+
+			session = new MiningSession(project, releases, context.getReleaseManager().getReleaseNames(), bugs, cmPerRelease);
+		}
+
+		return session;
+	}
+
 	/**
 	 * Creates the dataset with information about:
 	 * 		- Bugs fixed (Jira)
@@ -35,23 +69,32 @@ public class DatasetManager {
 	 * @return : dataset filename and project releases
 	 * */
 	public Map<String, List<FileMetadata>> getDataset() throws GitAPIException, IOException {
+		return manageFiles(getSession());
+	}
 
-		retrieveFromJira();
-
-		retrieveFromGit();
+	/**
+	 * Analyzes the whole history of the project (no release is cut) and keeps the files of the last release
+	 * to be updated with new commits.
+	 *
+	 * @return : files manager with the current release of the project
+	 * */
+	public LiveFilesManager getLiveFiles() throws GitAPIException, IOException {
+		MiningSession miningSession = getSession();
 
-		Map<String, Map<RevCommit, LocalDate>> cmPerRelease = manageReleases();
+		LiveFilesManager live = new LiveFilesManager(context, miningSession);
+		live.analyzeFilesEvolution(miningSession.getCommitsPerRelease()); //the changes of the commits are already recorded
+		LoggingUtils.logString("Current release: ", live.getCurrentRelease());
 
-		return manageFiles(cmPerRelease);
+		return live;
 	}
 
-	private Map<String, List<FileMetadata>> manageFiles(Map<String, Map<RevCommit, LocalDate>> cmPerRelease) throws GitAPIException, IOException {
-		FilesManager dt = new FilesManager(project, bugs);
+	private Map<String, List<FileMetadata>> manageFiles(MiningSession session) throws GitAPIException, IOException {
+		FilesManager dt = new FilesManager(context, session);
 
-		Map<String, List<FileMetadata>> files = dt.analyzeFilesEvolution(cmPerRelease);
+		Map<String, List<FileMetadata>> files = dt.analyzeFilesEvolution(session.getCommitsPerRelease());
 		LoggingUtils.logFilesPerRelease(files.entrySet());
 
-		removeSecondHalfOfReleases(files, ReleaseManager.getInstance().getReleaseNames());	/*Cut the second half of
+		removeSecondHalfOfReleases(files, session.getReleaseNames());	/*Cut the second half of
 		 																					releases to get reliable
 		 																					input*/
 		LoggingUtils.logList("Trimmed releases: ", files.keySet());
@@ -60,9 +103,8 @@ public class DatasetManager {
 	}
 
 	protected Map<String, Map<RevCommit, LocalDate>> manageReleases() throws IOException, GitAPIException {
-		ReleaseManager.setReleases(releases); //set releases
-
-		ReleaseManager relMan = ReleaseManager.getInstance();
+		ReleaseManager relMan = context.getReleaseManager();
+		relMan.setReleases(releases); //set releases
 
 		bugs = relMan.analyzeOpeningAndFix(bugs); //get opening and fix versions
 		LoggingUtils.logInt("Number of bugs with valid opening and fix version: ", bugs.size());
@@ -77,9 +119,9 @@ public class DatasetManager {
 	}
 
 	protected void retrieveFromGit() throws GitAPIException {
-		GitManager git = GitManager.getInstance();
+		GitManager git = context.getGitManager();
 
-		commits = git.getCommits(project); //list of every commit in the project
+		commits = git.getCommits(); //list of every commit in the project
 		LoggingUtils.logInt("Total number of commits retrieved: ", commits.size());
 
 		bugs = git.manageBugCommits(bugs, commits); //manage list of commits linked to a jira fix ticket
@@ -92,7 +134,7 @@ public class DatasetManager {
 	}
 
 	protected void retrieveFromJira() throws IOException {
-		JiraManager jira = JiraManager.getInstance(project);
+		JiraManager jira = context.getJiraManager();
 
 		releases = jira.getProjectVersions(); //list of releases
 		LoggingUtils.logList("Releases: ", releases.keySet());
@@ -1,6 +1,7 @@
 package main.dataset.control;
 
 import main.dataset.entity.FileMetadata;
+import main.dataset.entity.MiningSession;
 import main.utils.LoggingUtils;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -13,8 +14,12 @@ import java.util.List;
 import java.util.Map;
 
 public class DatasetManagerITT extends DatasetManager{
-    public DatasetManagerITT(String projectName) {
-        super(projectName);
+    public DatasetManagerITT(RunContext context) {
+        super(context);
+    }
+
+    public DatasetManagerITT(RunContext context, MiningSession session) {
+        super(context, session);
     }
 
     /**
@@ -26,9 +31,7 @@ public class DatasetManagerITT extends DatasetManager{
 
         List<Map<String, List<FileMetadata>>> results = new ArrayList<>();
 
-        retrieveFromJira();
-        retrieveFromGit();
-        Map<String, Map<RevCommit, LocalDate>> cmPerRelease = manageReleases();
+        Map<String, Map<RevCommit, LocalDate>> cmPerRelease = getSession().getCommitsPerRelease();
 
         int totConsideredReleases = (int) Math.ceil((double) cmPerRelease.size()/2);
         //Process commits to construct the datasets
@@ -48,7 +51,7 @@ public class DatasetManagerITT extends DatasetManager{
     }
 
     private Map<String, List<FileMetadata>> manageFilesITT(Map<String, Map<RevCommit, LocalDate>> cmPerRelease) throws GitAPIException, IOException {
-        FilesManager fm = new FilesManager(project, bugs);
+        FilesManager fm = new FilesManager(context, session); //changes already mined for previous sets are replayed
 
         Map<String, List<FileMetadata>> files = fm.analyzeFilesEvolution(cmPerRelease);
         LoggingUtils.logFilesPerRelease(files.entrySet());
@@ -7,14 +7,16 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 import main.dataset.entity.Bug;
+import main.dataset.entity.ChangeRecord;
 import main.dataset.entity.FileMetadata;
+import main.dataset.entity.MiningSession;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
 import org.eclipse.jgit.diff.Edit.Type;
 import org.eclipse.jgit.lib.PersonIdent;
-import org.eclipse.jgit.patch.FileHeader;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
 
@@ -26,13 +28,17 @@ import org.eclipse.jgit.util.io.DisabledOutputStream;
 public class FilesManager {
 
 	protected final String project;
+	protected final RunContext context;
+	protected final MiningSession session;
 	protected final List<Bug> bugs;
 	protected final Map<String, List<FileMetadata>> files; //map of releases and list of files
 	protected final List<FileMetadata> chgSet; //set of files committed together
 
-	public FilesManager(String projectName, List<Bug> bugs) {
-		this.project = projectName;
-		this.bugs = bugs;
+	public FilesManager(RunContext context, MiningSession session) {
+		this.project = session.getProject();
+		this.context = context;
+		this.session = session;
+		this.bugs = session.getBugs();
 		this.files = new LinkedHashMap<>();
 		this.chgSet = new ArrayList<>();
 	}
@@ -109,7 +115,7 @@ public class FilesManager {
 	 *
 	 * @param currRelease : current release
 	 * */
-	private void removeDeletedFiles(String currRelease) {
+	protected void removeDeletedFiles(String currRelease) {
 		List<FileMetadata> toRemove = new ArrayList<>();
 
 		for(FileMetadata file: files.get(currRelease)){
@@ -123,59 +129,89 @@ public class FilesManager {
 
 	/**
 	 * Scan the differences between pairs of sequential commits and manages those differences.
+	 * The differences are retrieved from the mining session if already recorded, else they are mined and recorded.
 	 *
 	 * @param release : the release in which these commits took place
 	 * @param from: the source commit
 	 * @param to: the destination commit
 	 */
 	public void computeChanges(String release, RevCommit from, RevCommit to) throws IOException, GitAPIException {
-		DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
-
-		GitManager git = GitManager.getInstance(); //Uses Git API to compute the difference tree
-		List<DiffEntry> diffs = git.retrieveDifferences(project, diffFormatter, from, to);
+		List<ChangeRecord> changes = session.getChanges(to);
+		if(changes == null){
+			changes = recordChanges(from, to);
+		}
 
-		for (DiffEntry diff : diffs) {
-			switch (diff.getChangeType()) {
+		for (ChangeRecord change : changes) {
+			switch (change.getChangeType()) {
 				case ADD:
-					manageAddition(release, to, diffFormatter, diff);
+					manageAddition(release, to, change);
 					break;
 				case MODIFY:
-					manageModified(release, to, diffFormatter, diff);
+					manageModified(release, to, change);
 					break;
 				case DELETE:
-					manageDeletion(release, diff.getOldPath());
+					manageDeletion(release, change.getOldPath());
 					break;
 				case RENAME:
-					manageRenaming(release, diff.getOldPath(), diff.getNewPath());
+					manageRenaming(release, change.getOldPath(), change.getNewPath());
 					break;
 				case COPY:
-					manageCopying(release, diff.getOldPath(), diff.getNewPath());
+					manageCopying(release, change.getOldPath(), change.getNewPath());
 					break;
 			}
 		}
 	}
 
+	/**
+	 * Mines the differences between a pair of sequential commits and records them in the mining session.
+	 *
+	 * @param from: the source commit
+	 * @param to: the destination commit
+	 *
+	 * @return : list of recorded changes
+	 */
+	private List<ChangeRecord> recordChanges(RevCommit from, RevCommit to) throws IOException, GitAPIException {
+		List<ChangeRecord> changes = new ArrayList<>();
+
+		try(DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)){
+			GitManager git = context.getGitManager(); //Uses Git API to compute the difference tree
+			List<DiffEntry> diffs = git.retrieveDifferences(diffFormatter, from, to);
+
+			EditList edits;
+			for (DiffEntry diff : diffs) {
+				edits = null;
+				if(diff.getChangeType() == DiffEntry.ChangeType.ADD || diff.getChangeType() == DiffEntry.ChangeType.MODIFY){
+					edits = diffFormatter.toFileHeader(diff).toEditList(); //LOC changes are needed only here
+				}
+
+				changes.add(new ChangeRecord(diff.getChangeType(), diff.getOldPath(), diff.getNewPath(), edits));
+			}
+		}
+
+		session.recordChanges(to, changes);
+		return changes;
+	}
+
 	/**
 	 * Triggered by a detected addition of a new .java file to the repository.
 	 *
 	 * @param release: name of the release in which the addition is done
 	 * @param to: reference to the commit that added the file
-	 * @param df: instance of the DiffFormatter
-	 * @param diff: instance of the DiffEntry
+	 * @param change: recorded change
 	 */
-	private void manageAddition(String release, RevCommit to, DiffFormatter df, DiffEntry diff) throws IOException {
+	private void manageAddition(String release, RevCommit to, ChangeRecord change) {
 		PersonIdent creator = to.getAuthorIdent();
 		LocalDate additionDate = creator.getWhen().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
 
 		//Check if the file already exists
-		FileMetadata file = getFile(release, diff.getNewPath());
+		FileMetadata file = getFile(release, change.getNewPath());
 
 		//If the file does not exist or was deleted in the past, create a new FileMetadata instance
-		if(file == null && !diff.getNewPath().contains("Test")) {
-			FileMetadata f = new FileMetadata(diff.getNewPath(), release, to, additionDate, creator.getName());
+		if(file == null && !change.getNewPath().contains("Test")) {
+			FileMetadata f = new FileMetadata(change.getNewPath(), release, to, additionDate, creator.getName());
 
 			//Manage the LOC modifications
-			computeLOCChanges(f, df, diff, release, to);
+			computeLOCChanges(f, change.getEdits(), release, to);
 
 			//Add the file to a global list related to the release
 			updateListOfFiles(release, f);
@@ -191,12 +227,11 @@ public class FilesManager {
 	 * 
 	 * @param release: name of the release in which the addition is done
 	 * @param to: reference to the commit that added the file
-	 * @param df: instance of the DiffFormatter
-	 * @param diff: instance of the DiffEntry
+	 * @param change: recorded change
 	 */
-	private void manageModified(String release, RevCommit to, DiffFormatter df, DiffEntry diff) throws IOException {
+	private void manageModified(String release, RevCommit to, ChangeRecord change) {
 		//Check if the file exists
-		FileMetadata file = getFile(release, diff.getNewPath());
+		FileMetadata file = getFile(release, change.getNewPath());
 		if(file == null) { //the file was not "seen" as added before
 			return;
 		}
@@ -215,7 +250,7 @@ public class FilesManager {
 		}
 
 		//Manage the LOC of the file
-		computeLOCChanges(file, df, diff, release, to);
+		computeLOCChanges(file, change.getEdits(), release, to);
 
 		//Manage the changing set of the file to add at the end of the commit analysis
 		updateChgSet(file);
@@ -324,19 +359,16 @@ public class FilesManager {
 	 * Manages the LOC updates for the file and consequently its size.
 	 *
 	 * @param f: file to analyze
-	 * @param df: differences formatter
-	 * @param diff: type of difference
+	 * @param edits: list of edits of the file in the revision
 	 * @param release: release of the commit
 	 * @param revision: commit related to the changes
 	 */
-	private void computeLOCChanges(FileMetadata f, DiffFormatter df, DiffEntry diff, String release, RevCommit revision)
-			throws IOException {
+	private void computeLOCChanges(FileMetadata f, EditList edits, String release, RevCommit revision) {
 
 		//Get original file size (0 if new)
 		int size = f.getSize();
 		
-		FileHeader fileHeader = df.toFileHeader(diff);
-		for(Edit edit: fileHeader.toEditList()) {
+		for(Edit edit: edits) {
 
 			if (edit.getType() == Type.INSERT) { //LOCs were added
 				//increment the size of the file and update the list for the "LOC added"
@@ -382,7 +414,7 @@ public class FilesManager {
 	 * @param release : given release
 	 * @param lastCommit : last commit in the release
 	 * */
-	private void updateFilesAge(String release, RevCommit lastCommit) {
+	protected void updateFilesAge(String release, RevCommit lastCommit) {
 		LocalDate lastDate = lastCommit.getAuthorIdent().getWhen().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
 		for(FileMetadata file: files.get(release)){ //files added or modified in the release
 			file.setAge(ChronoUnit.WEEKS.between(file.getCreation().getValue(), lastDate));	/*updates file age in terms
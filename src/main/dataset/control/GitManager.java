@@ -6,8 +6,11 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.AbstractTreeIterator;
@@ -30,25 +33,20 @@ public class GitManager {
 
     private static final String BASE_PATH = "..\\Sources\\";
 
-    //Instantiation
-    private static GitManager instance = null;
+    private final String project;
+    private final LocalDate dateLimit; //null if the whole log is considered
 
-    private GitManager() {}
-
-    public static GitManager getInstance() {
-        if(instance == null) {
-            instance = new GitManager();
-        }
-
-        return instance;
+    public GitManager(String project, LocalDate dateLimit) {
+        this.project = project;
+        this.dateLimit = dateLimit;
     }
 
     /**
-     * Retrieves every commit of the repository until the 'date_limit' property value.
+     * Retrieves every commit of the repository until the date limit, if any.
      *
      * @return : map of repository commits with date
      * */
-    public Map<RevCommit, LocalDate> getCommits(String project) throws GitAPIException {
+    public Map<RevCommit, LocalDate> getCommits() throws GitAPIException {
         String path = BASE_PATH + project;
 
         Map<RevCommit, LocalDate> commits = new LinkedHashMap<>();
@@ -56,8 +54,7 @@ public class GitManager {
         Iterable<RevCommit> log;
 
         //Set date filter to get only the useful commits
-        if(project.equals(System.getProperty("project_name"))){
-            LocalDate dateLimit = LocalDate.parse(System.getProperty("date_limit"));
+        if(dateLimit != null){
             RevFilter filter = CommitTimeRevFilter.before(Date.from(dateLimit.atStartOfDay(ZoneId.systemDefault()).toInstant()));
 
             //Retrieve log
@@ -78,6 +75,45 @@ public class GitManager {
         return commits;
     }
 
+    /**
+     * Retrieves the identifier of the commit the HEAD of the repository points to.
+     *
+     * @return : HEAD commit id, null if the repository has no commits
+     * */
+    public String getHeadId() throws GitAPIException, IOException {
+        String path = BASE_PATH + project;
+
+        try(Git git = Git.init().setDirectory(new File(path)).call()){
+            ObjectId head = git.getRepository().resolve(Constants.HEAD);
+            return head == null ? null : head.getName();
+        }
+    }
+
+    /**
+     * Retrieves a commit of the repository, with its first parent ready to compute the differences.
+     *
+     * @param id : commit id or any revision string (e.g. HEAD)
+     *
+     * @return : the commit, null if the revision does not exist
+     * */
+    public RevCommit getCommit(String id) throws GitAPIException, IOException {
+        String path = BASE_PATH + project;
+
+        try(Git git = Git.init().setDirectory(new File(path)).call(); RevWalk walk = new RevWalk(git.getRepository())){
+            ObjectId objectId = git.getRepository().resolve(id);
+            if(objectId == null){
+                return null;
+            }
+
+            RevCommit commit = walk.parseCommit(objectId);
+            if(commit.getParentCount() > 0){
+                walk.parseHeaders(commit.getParent(0)); //the tree of the parent is needed by the differences
+            }
+
+            return commit;
+        }
+    }
+
     /**
      * Manages the commits associated to a bug ticket.
      *
@@ -143,7 +179,7 @@ public class GitManager {
      *
      * @return : list of DiffEntry instances
      * */
-    public List<DiffEntry> retrieveDifferences(String project, DiffFormatter diffFormatter, RevCommit from, RevCommit to) throws GitAPIException, IOException {
+    public List<DiffEntry> retrieveDifferences(DiffFormatter diffFormatter, RevCommit from, RevCommit to) throws GitAPIException, IOException {
         String path = BASE_PATH + project;
 
         Git git = Git.init().setDirectory(new File(path)).call();
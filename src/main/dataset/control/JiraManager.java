@@ -16,22 +16,10 @@ import org.json.JSONObject;
  * */
 public class JiraManager {
 
-	private static String project;
+	private final String project;
 
-	//Instantiation
-	private static JiraManager instance = null;
-
-	private JiraManager() {
-
-	}
-
-	public static JiraManager getInstance(String projName) {
-		if(instance == null) {
-			instance = new JiraManager();
-		}
-
-		project = projName;
-		return instance;
+	public JiraManager(String projName) {
+		this.project = projName;
 	}
 
 	/**
@@ -81,11 +69,7 @@ public class JiraManager {
 		List<Bug> bugs = new ArrayList<>();
 		while(true) {
 			j = i + 100;
-			String jiraUrl = "https://issues.apache.org/jira/rest/api/2/search?jql=project=%22"
-					+ project
-					+ "%22AND%22issuetype%22=%22Bug%22AND(%22status%22=%22Resolved%22OR%22status%22=%22Closed%22)"
-					+ "AND%22resolution%22=%22Fixed%22ORDER%20BY%22createdDate%22ASC"
-					+ "&startAt=" + i + "&maxResults=" + j;
+			String jiraUrl = getFixesQuery() + "&startAt=" + i + "&maxResults=" + j;
 
 			res = parseTickets(i, j, jiraUrl);
 			if (res == null) {
@@ -99,6 +83,44 @@ public class JiraManager {
 		return bugs;
 	}
 
+	/**
+	 * Gets a stamp (key and last update) for every jira ticket marked as a bug fix.
+	 * Only the update field is requested, so the tickets can be checked for changes without retrieving them.
+	 *
+	 * @return : list of ticket stamps in the form KEY@updated
+	 */
+	public List<String> getFixStamps() throws IOException {
+		List<String> stamps = new ArrayList<>();
+
+		int total;
+		do {
+			String jiraUrl = getFixesQuery() + "&fields=updated&startAt=" + stamps.size() + "&maxResults=1000";
+
+			JSONObject json = JSONManager.getInstance().readJsonFromUrl(jiraUrl);
+			JSONArray issues = json.getJSONArray("issues");
+			total = json.getInt("total");
+
+			if(issues.length() == 0){
+				break;
+			}
+
+			JSONObject issue;
+			for(int i=0; i<issues.length(); i++){
+				issue = issues.getJSONObject(i);
+				stamps.add(issue.getString("key") + "@" + issue.getJSONObject("fields").getString("updated"));
+			}
+		} while(stamps.size() < total);
+
+		return stamps;
+	}
+
+	private String getFixesQuery() {
+		return "https://issues.apache.org/jira/rest/api/2/search?jql=project=%22"
+				+ project
+				+ "%22AND%22issuetype%22=%22Bug%22AND(%22status%22=%22Resolved%22OR%22status%22=%22Closed%22)"
+				+ "AND%22resolution%22=%22Fixed%22ORDER%20BY%22createdDate%22ASC";
+	}
+
 	/**
 	 * Parses the results of the REST-API invocation on tickets.
 	 * From the retrieved information, the bugs are associated with:
@@ -0,0 +1,125 @@
+package main.dataset.control;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+
+import main.dataset.entity.FileMetadata;
+import main.dataset.entity.MiningSession;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Controller class.
+ *
+ * Keeps the files of the current (last) release of the project in memory after the analysis of the whole history,
+ * and updates them with new commits, one at a time, with the same logic of the history analysis.
+ * */
+public class LiveFilesManager extends FilesManager {
+
+	private String currentRelease;
+	private final Set<String> appliedCommits = new HashSet<>(); //commits already in the state of the files
+	private String lastCommit; //last commit in the state of the files: the next one must be its child
+
+	public LiveFilesManager(RunContext context, MiningSession session) {
+		super(context, session);
+	}
+
+	//--------------------------------------------Getters and Setters---------------------------------------------------
+	public String getCurrentRelease() { return this.currentRelease; }
+	public String getLastCommit() { return this.lastCommit; }
+
+	//----------------------------------------------Functionalities-----------------------------------------------------
+	/**
+	 * Analyzes the whole history of the project: the files of the last release become the current state.
+	 *
+	 * @param commits : every commit for the project divided per release (ordered from first to last)
+	 *
+	 * @return : list of files per release
+	 */
+	@Override
+	public Map<String, List<FileMetadata>> analyzeFilesEvolution(Map<String, Map<RevCommit, LocalDate>> commits) throws GitAPIException, IOException {
+		Map<String, List<FileMetadata>> result = super.analyzeFilesEvolution(commits);
+
+		Set<String> firstParents = new HashSet<>();
+		for(Map.Entry<String, Map<RevCommit, LocalDate>> entry: commits.entrySet()){
+			currentRelease = entry.getKey();
+			for(RevCommit commit: entry.getValue().keySet()){
+				appliedCommits.add(commit.getName());
+				if(commit.getParentCount() > 0){
+					firstParents.add(commit.getParent(0).getName());
+				}
+			}
+		}
+		files.computeIfAbsent(currentRelease, k -> new ArrayList<>());
+
+		//last commit: tip of the mined history (the commits of a day are not in commit order)
+		RevCommit tip = null;
+		for(Map<RevCommit, LocalDate> releaseCommits: commits.values()){
+			for(RevCommit commit: releaseCommits.keySet()){
+				if(!firstParents.contains(commit.getName()) && (tip == null || commit.getCommitTime() > tip.getCommitTime())){
+					tip = commit;
+				}
+			}
+		}
+		lastCommit = tip == null ? null : tip.getName();
+
+		return result;
+	}
+
+	/**
+	 * Applies a new commit to the files of the current release.
+	 * A commit already analyzed is not applied again: its touched files are still returned.
+	 * A new commit must be a child (first parent) of the last commit applied, otherwise the state of the files would
+	 * skip or mix the changes of other commits.
+	 *
+	 * @param commit : new commit, with its first parent parsed
+	 *
+	 * @return : files of the current release touched by the commit (added, modified, renamed or copied)
+	 *
+	 * @throws IllegalStateException : if the commit is not a child of the last commit applied
+	 */
+	public synchronized List<FileMetadata> applyCommit(RevCommit commit) throws GitAPIException, IOException {
+		RevCommit parent = commit.getParentCount() > 0 ? commit.getParent(0) : null;
+
+		if(appliedCommits.contains(commit.getName())){
+			return getTouchedFiles(commit);
+		}
+		if(lastCommit != null && (parent == null || !parent.getName().equals(lastCommit))){
+			throw new IllegalStateException("The parent of " + commit.getName() + " is not the last applied commit " + lastCommit);
+		}
+
+		appliedCommits.add(commit.getName());
+		lastCommit = commit.getName();
+
+		computeChanges(currentRelease, parent, commit); //same changes of the history analysis
+
+		List<FileMetadata> touched = new ArrayList<>(chgSet);
+		for(FileMetadata f: chgSet) {
+			f.addChgSetCommit(currentRelease, commit, chgSet.size());
+		}
+		chgSet.clear();
+
+		removeDeletedFiles(currentRelease);
+		updateFilesAge(currentRelease, commit); //ages at the time of the commit
+
+		touched.removeIf(FileMetadata::isDeleted);
+		return touched;
+	}
+
+	/**
+	 * Retrieves the files of the current release whose changing set includes a commit.
+	 * */
+	private List<FileMetadata> getTouchedFiles(RevCommit commit) {
+		List<FileMetadata> touched = new ArrayList<>();
+
+		for(FileMetadata file: files.get(currentRelease)){
+			Map<String, Map<RevCommit, Integer>> set = file.getChgSet();
+			if(set != null && set.containsKey(currentRelease) && set.get(currentRelease).containsKey(commit)){
+				touched.add(file);
+			}
+		}
+
+		return touched;
+	}
+}
@@ -5,88 +5,196 @@ import main.utils.LoggingUtils;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.revwalk.RevCommit;
 
-import java.io.IOException;
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class Proportion {
 
-    private static double p = 0.68;
+    private static final String CACHE_FILE = "proportion_cache.properties";
+    private static final Object CACHE_LOCK = new Object(); //the cache file is shared by the runs of the process
+
+    private double p = 0.68;
     private final String[] projects = {"AVRO", "STORM", "ZOOKEEPER", "SYNCOPE", "TAJO"};
 
-    private static Proportion instance = null;
+    private final RunContext context;
+
+    public Proportion(RunContext context) throws IOException, GitAPIException {
+        this.context = context;
 
-    private Proportion() throws IOException, GitAPIException {
         if(p == 0){
             coldStart();
         }
     }
 
-    public static Proportion getInstance() throws IOException, GitAPIException {
-        if(instance == null){
-            instance = new Proportion();
+    public void setProportion(double pro){
+        p = pro;
+    }
+
+    /**
+     * Computes the proportion as the average of the proportions of the reference projects.
+     * The reference projects are analyzed concurrently; the proportion of a reference project is read from
+     * the cache when the fingerprint of its inputs (tickets and HEAD commit) did not change.
+     * */
+    public void coldStart() throws IOException, GitAPIException {
+        Properties cache = loadCache();
+
+        List<Callable<Double>> tasks = new ArrayList<>();
+        for(String projName: projects){
+            tasks.add(() -> getReferenceProportion(projName, cache));
+        }
+
+        double tempP = 0;
+        try {
+            for(Future<Double> result: context.getPool().invokeAll(tasks)){
+                tempP += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Cold start interrupted.", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof GitAPIException){
+                throw (GitAPIException) e.getCause();
+            }
+            throw new IOException("Cold start failed.", e.getCause());
         }
 
-        return instance;
+        storeCache(cache);
+
+        setProportion(tempP/projects.length);
+        LoggingUtils.logDouble("The proportion after cold start is: ", p);
     }
 
-    public static void setProportion(double pro){
-        p = pro;
+    /**
+     * Retrieves the proportion of a reference project, from the cache if its inputs did not change.
+     *
+     * @param projName : name of the reference project
+     * @param cache : cached proportions and fingerprints of the reference projects
+     *
+     * @return : proportion of the reference project
+     * */
+    private double getReferenceProportion(String projName, Properties cache) throws IOException, GitAPIException {
+        RunContext refContext = context.forReference(projName); //every reference project is analyzed in its own context
+
+        String fingerprint = computeFingerprint(refContext);
+        if(fingerprint.equals(cache.getProperty(projName + ".fingerprint"))){
+            double cached = Double.parseDouble(cache.getProperty(projName + ".proportion"));
+            LoggingUtils.logDouble("The cached proportion with " + projName + " is: ", cached);
+            return cached;
+        }
+
+        double refP = computeReferenceProportion(refContext);
+
+        cache.setProperty(projName + ".fingerprint", fingerprint);
+        cache.setProperty(projName + ".proportion", String.valueOf(refP));
+
+        return refP;
     }
 
-    public void coldStart() throws IOException, GitAPIException {
-        ReleaseManager relMan = ReleaseManager.getInstance();
-        JiraManager jira;
-        GitManager git;
-        List<Bug> bugs;
-        Map<RevCommit, LocalDate> commits;
-        List<Bug> valid;
+    private double computeReferenceProportion(RunContext refContext) throws IOException, GitAPIException {
+        String projName = refContext.getProject();
+        ReleaseManager relMan = refContext.getReleaseManager();
 
-        double tempP = 0;
+        //JIRA
+        JiraManager jira = refContext.getJiraManager();
+        relMan.setReleases(jira.getProjectVersions());
+        List<Bug> bugs = jira.getFixes();
+        LoggingUtils.logInt(projName + " initial bugs: ", bugs.size());
 
-        for(String projName: projects){
-            //JIRA
-            jira = JiraManager.getInstance(projName);
-            ReleaseManager.setReleases(jira.getProjectVersions());
-            bugs = jira.getFixes();
-            LoggingUtils.logInt(projName + " initial bugs: ", bugs.size());
-
-            //GIT
-            git = GitManager.getInstance();
-            commits = git.getCommits(projName); //list of every commit in the project
-            LoggingUtils.logInt(projName + " total commits: ", commits.size());
-
-            bugs = git.manageBugCommits(bugs, commits); //manage list of commits linked to a jira fix ticket
-            bugs = git.removeUnreferencedBugs(bugs); //must be after the linkage computation
-            bugs = git.processFixCommitInfo(bugs);
-
-            //RELEASES
-            bugs = relMan.analyzeOpeningAndFix(bugs);
-            LoggingUtils.logInt(projName + " before validation bugs: ", bugs.size());
-
-            valid = new ArrayList<>();
-            for(Bug bug: bugs){ //divide bugs with valid AVs and bugs with invalid AVs
-                if(relMan.hasValidAVs(bug)){
-                    bug.setInjectedVer(relMan.getOldestVersion(bug.getAffectedVers())); //set injected version for bugs with valid affected versions
-                    valid.add(bug);
-                }
+        //GIT
+        GitManager git = refContext.getGitManager();
+        Map<RevCommit, LocalDate> commits = git.getCommits(); //list of every commit in the project
+        LoggingUtils.logInt(projName + " total commits: ", commits.size());
+
+        bugs = git.manageBugCommits(bugs, commits); //manage list of commits linked to a jira fix ticket
+        bugs = git.removeUnreferencedBugs(bugs); //must be after the linkage computation
+        bugs = git.processFixCommitInfo(bugs);
+
+        //RELEASES
+        bugs = relMan.analyzeOpeningAndFix(bugs);
+        LoggingUtils.logInt(projName + " before validation bugs: ", bugs.size());
+
+        List<Bug> valid = new ArrayList<>();
+        for(Bug bug: bugs){ //divide bugs with valid AVs and bugs with invalid AVs
+            if(relMan.hasValidAVs(bug)){
+                bug.setInjectedVer(relMan.getOldestVersion(bug.getAffectedVers())); //set injected version for bugs with valid affected versions
+                valid.add(bug);
             }
+        }
+
+        LoggingUtils.logInt(projName + " valid bugs: ", valid.size());
+        double refP = updateProportion(valid, relMan);
+        LoggingUtils.logDouble("The proportion with " + projName + " is: ", refP);
+
+        return refP;
+    }
+
+    /**
+     * Computes the fingerprint of the inputs used to compute the proportion of a reference project.
+     *
+     * @param refContext : context of the reference project
+     *
+     * @return : hex digest of tickets stamps and HEAD commit
+     * */
+    private String computeFingerprint(RunContext refContext) throws IOException, GitAPIException {
+        List<String> stamps = refContext.getJiraManager().getFixStamps();
+        Collections.sort(stamps);
 
-            LoggingUtils.logInt(projName + " valid bugs: ", valid.size());
-            tempP += updateProportion(valid);
-            LoggingUtils.logDouble("The proportion with " + projName + " is: ", tempP);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
         }
 
-        setProportion(tempP/projects.length);
-        LoggingUtils.logDouble("The proportion after cold start is: ", p);
+        for(String stamp: stamps){
+            digest.update(stamp.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update(String.valueOf(refContext.getGitManager().getHeadId()).getBytes(StandardCharsets.UTF_8));
+
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    private Properties loadCache() throws IOException {
+        Properties cache = new Properties();
+
+        synchronized (CACHE_LOCK) {
+            File file = new File(context.getOutput() + CACHE_FILE);
+            if(file.exists()){
+                try(InputStream in = new FileInputStream(file)){
+                    cache.load(in);
+                }
+            }
+        }
+
+        return cache;
+    }
+
+    private void storeCache(Properties cache) throws IOException {
+        synchronized (CACHE_LOCK) {
+            Properties merged = loadCache(); //keep the entries stored by other runs in the meantime
+            merged.putAll(cache);
+
+            try(OutputStream out = new FileOutputStream(context.getOutput() + CACHE_FILE)){
+                merged.store(out, "Proportion of the reference projects");
+            }
+        }
     }
 
     /**
      * Computes the AVs of the tickets fixed on release R with the proportion of the tickets
      * that has valid AVs from release 1 to R-1.
      *
+     * The proportion of every release is obtained from running sums over the valid tickets,
+     * accumulated once in release order.
+     *
      * @param invalid : list of tickets to compute the AVs of
      * @param valid : list of tickets with valid AVs
      *
@@ -94,22 +202,34 @@ public class Proportion {
      * */
     public List<Bug> computeProportion(Map<String, List<Bug>> invalid, Map<String, List<Bug>> valid) {
         List<Bug> bugs = new ArrayList<>();
+        ReleaseManager relMan = context.getReleaseManager();
+
+        //Running sums: position i holds the contribution of the valid tickets fixed before the release with index i
+        int numReleases = relMan.getReleaseNames().length;
+        double[] sums = new double[numReleases + 2];
+        int[] counts = new int[numReleases + 2];
+
+        double sum = 0;
+        int count = 0;
+        for(Map.Entry<String, List<Bug>> validEntry: valid.entrySet()){
+            int idx = relMan.getIndexFromRelease(validEntry.getKey());
+            sums[idx] = sum;
+            counts[idx] = count;
+
+            for(Bug bug: validEntry.getValue()){
+                sum += getBugProportion(bug, relMan);
+                count++;
+            }
+        }
 
         for(Map.Entry<String, List<Bug>> invEntry: invalid.entrySet()){
-            String currRel = invEntry.getKey();
+            int currIdx = relMan.getIndexFromRelease(invEntry.getKey());
 
             //Proportion computation
-            List<Bug> usedForProportion = new ArrayList<>();
-            for(Map.Entry<String, List<Bug>> validEntry: valid.entrySet()){
-                if(validEntry.getKey().equals(currRel)){ //when the scan reaches the release to analyze update proportion
-                    setProportion(updateProportion(usedForProportion));
-                    break;
-                }
-
-                usedForProportion.addAll(validEntry.getValue());
+            if(valid.containsKey(invEntry.getKey())){ //proportion with the tickets fixed before the release to analyze
+                setProportion(counts[currIdx] == 0 ? 0 : sums[currIdx]/counts[currIdx]);
             }
 
-            ReleaseManager relMan = ReleaseManager.getInstance();
             //IV + AVs computation
             for(Bug bug: invEntry.getValue()){
                 bug.setInjectedVer(relMan.computeInjectedVersion(bug, p)); //use the updated proportion to get IV
@@ -129,31 +249,41 @@ public class Proportion {
      * Computes the proportion factor with a list of bugs.
      *
      * @param bugs : list of bugs with valid AVs
+     * @param relMan : release manager of the project the bugs belong to
      *
      * @return : proportion factor
      * */
-    private double updateProportion(List<Bug> bugs) {
-        double iFix;
-        double iOpen;
-        double iInj;
-
+    private double updateProportion(List<Bug> bugs, ReleaseManager relMan) {
         double prop = 0;
         if(bugs.isEmpty()){
             return prop;
         }
 
-        ReleaseManager relMan = ReleaseManager.getInstance();
         for(Bug bug: bugs){
-            iFix = relMan.getIndexFromRelease(bug.getFixVer());
-            iOpen = relMan.getIndexFromRelease(bug.getOpeningVer());
-            iInj = relMan.getIndexFromRelease(bug.getInjectedVer());
-
-            if(iFix - iOpen != 0){ //if opening version and fix version are the same, discard the bug
-                prop += (iFix - iInj)/(iFix - iOpen);
-            }
+            prop += getBugProportion(bug, relMan);
         }
 
         return prop/bugs.size();
     }
 
+    /**
+     * Computes the contribution of a single bug to the proportion factor.
+     *
+     * @param bug : bug with valid AVs
+     * @param relMan : release manager of the project the bug belongs to
+     *
+     * @return : (FV-IV)/(FV-OV), 0 if opening version and fix version are the same
+     * */
+    private double getBugProportion(Bug bug, ReleaseManager relMan) {
+        double iFix = relMan.getIndexFromRelease(bug.getFixVer());
+        double iOpen = relMan.getIndexFromRelease(bug.getOpeningVer());
+        double iInj = relMan.getIndexFromRelease(bug.getInjectedVer());
+
+        if(iFix - iOpen == 0){ //if opening version and fix version are the same, discard the bug
+            return 0;
+        }
+
+        return (iFix - iInj)/(iFix - iOpen);
+    }
+
 }
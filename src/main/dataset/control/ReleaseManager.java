@@ -18,27 +18,27 @@ import java.util.*;
  * */
 public class ReleaseManager {
 
-	private static Map<String, LocalDate> releases;
-	private static String[] releaseNames;
-	private static LocalDate[] startDates;
-	private static LocalDate[] endDates;
+	private final RunContext context;
 
-	//Instantiation
-	private static ReleaseManager instance = null;
+	private Map<String, LocalDate> releases;
+	private Map<String, Integer> releaseIndexes; //index of every release, starting from 1
+	private String[] releaseNames;
+	private LocalDate[] startDates;
+	private LocalDate[] endDates;
 
-    private ReleaseManager() {/**/}
-
-    public static ReleaseManager getInstance() {
-        if(instance == null) {
-        	instance = new ReleaseManager();
-        }
-        return instance;
-    }
+    public ReleaseManager(RunContext context) {
+		this.context = context;
+	}
 
 	//Getters & Setters
-	public static void setReleases(Map<String, LocalDate> releasesList){
+	public void setReleases(Map<String, LocalDate> releasesList){
 		releases = releasesList;
 		releaseNames = releases.keySet().toArray(new String[0]);
+
+		releaseIndexes = new HashMap<>();
+		for(int idx=0; idx<releaseNames.length; idx++){
+			releaseIndexes.put(releaseNames[idx], idx+1);
+		}
 		startDates = releases.values().toArray(new LocalDate[0]);
 
 		endDates = new LocalDate[releases.size()];
@@ -46,7 +46,7 @@ public class ReleaseManager {
 		for(i=0; i<startDates.length-1; i++){
 			endDates[i] = startDates[i+1];
 		}
-		endDates[i] = LocalDate.parse(System.getProperty("date_limit"));
+		endDates[i] = context.getDateLimit();
 	}
 
 	public String[] getReleaseNames() {
@@ -158,7 +158,7 @@ public class ReleaseManager {
 		Map<String, List<Bug>> invalidOrderedByFix = getBugsByRelease(invalid);
 		invalidOrderedByFix.remove(releaseNames[0]); //bugs fixed in the first release don't affect other releases
 
-		Proportion proportion = Proportion.getInstance();
+		Proportion proportion = context.getProportion();
 		invalid = proportion.computeProportion(invalidOrderedByFix, validOrderedByFix);
 		valid.addAll(invalid);
 
@@ -290,13 +290,11 @@ public class ReleaseManager {
 	 * @return : release
 	 * */
 	private String getReleaseFromIndex(int i) {
-		for(String rel: releases.keySet()){
-			if(i == 1){
-				return rel;
-			}
-			i--;
+		if(i < 1 || i > releaseNames.length){
+			return null;
 		}
-		return null;
+
+		return releaseNames[i-1];
 	}
 
 	/**
@@ -307,15 +305,8 @@ public class ReleaseManager {
 	 * @return : index
 	 * */
 	public int getIndexFromRelease(String ver) {
-		int idx = 1;
-		for(String rel: releases.keySet()){
-			if(ver.equals(rel)){
-				return idx;
-			}
-			idx++;
-		}
-
-		return -1;
+		Integer idx = releaseIndexes.get(ver);
+		return idx == null ? -1 : idx;
 	}
 
 	/**
@@ -0,0 +1,114 @@
+package main.dataset.control;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Context of a single pipeline run.
+ *
+ * Owns the controllers used to analyze one project, so that several projects
+ * (or the reference projects of the proportion cold start) can be processed in the same JVM
+ * without sharing any state.
+ * */
+public class RunContext {
+
+    private final String project;
+    private final String output;
+    private final LocalDate dateLimit;
+    private final boolean limitCommits; //only the commits before the date limit are considered
+    private final ExecutorService pool; //worker pool shared with the other runs of the process
+
+    private final JiraManager jiraManager;
+    private final GitManager gitManager;
+    private final ReleaseManager releaseManager;
+    private Proportion proportion;
+
+    private RunContext(String project, String output, LocalDate dateLimit, boolean limitCommits, ExecutorService pool) {
+        this.project = project;
+        this.output = output;
+        this.dateLimit = dateLimit;
+        this.limitCommits = limitCommits;
+        this.pool = pool;
+
+        this.jiraManager = new JiraManager(project);
+        this.gitManager = new GitManager(project, limitCommits ? dateLimit : null);
+        this.releaseManager = new ReleaseManager(this);
+    }
+
+    /**
+     * Creates the context for the analysis of a project.
+     *
+     * @param project : name of the project
+     * @param output : directory of output files
+     * @param pool : worker pool of the process
+     *
+     * @return : new context
+     * */
+    public static RunContext forProject(String project, String output, ExecutorService pool) {
+        LocalDate dateLimit;
+        if(project.equals("BOOKKEEPER")){ //Jira support ended on 2017-10-17
+            dateLimit = LocalDate.parse("2017-10-17");
+        }else{
+            dateLimit = LocalDate.now();
+        }
+
+        return new RunContext(project, output, dateLimit, true, pool);
+    }
+
+    /**
+     * Creates the context for a reference project used by this run (e.g. proportion cold start):
+     * the date limit is inherited but the commit log is not cut.
+     *
+     * @param referenceProject : name of the reference project
+     *
+     * @return : new context
+     * */
+    public RunContext forReference(String referenceProject) {
+        return new RunContext(referenceProject, output, dateLimit, false, pool);
+    }
+
+    //----------------------------------------------------Getters-------------------------------------------------------
+
+    public String getProject() {
+        return project;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public ExecutorService getPool() {
+        return pool;
+    }
+
+    public LocalDate getDateLimit() {
+        return dateLimit;
+    }
+
+    public boolean isLimitingCommits() {
+        return limitCommits;
+    }
+
+    public JiraManager getJiraManager() {
+        return jiraManager;
+    }
+
+    public GitManager getGitManager() {
+        return gitManager;
+    }
+
+    public ReleaseManager getReleaseManager() {
+        return releaseManager;
+    }
+
+    public synchronized Proportion getProportion() throws IOException, GitAPIException {
+        if(proportion == null){
+            proportion = new Proportion(this);
+        }
+
+        return proportion;
+    }
+}
@@ -0,0 +1,39 @@
+package main.dataset.entity;
+
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.EditList;
+
+/**
+ * Immutable trace of a single difference between a commit and its predecessor.
+ * Keeps only what is needed to replay the change on the files of a release without querying Git again.
+ * */
+public class ChangeRecord {
+
+    private final ChangeType changeType;
+    private final String oldPath;
+    private final String newPath;
+    private final EditList edits; //null for deletions, renaming and copies
+
+    public ChangeRecord(ChangeType changeType, String oldPath, String newPath, EditList edits) {
+        this.changeType = changeType;
+        this.oldPath = oldPath;
+        this.newPath = newPath;
+        this.edits = edits;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public String getOldPath() {
+        return oldPath;
+    }
+
+    public String getNewPath() {
+        return newPath;
+    }
+
+    public EditList getEdits() {
+        return edits;
+    }
+}
@@ -0,0 +1,77 @@
+package main.dataset.entity;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Result of the mining of a project (Jira + Git + releases analysis).
+ *
+ * The same session can be consumed by every dataset builder of the project:
+ * the changes computed for a commit are recorded the first time they are mined and replayed afterwards.
+ * */
+public class MiningSession {
+
+    private final String project;
+    private final Map<String, LocalDate> releases;
+    private final String[] releaseNames;
+    private final List<Bug> bugs;
+    private final Map<String, Map<RevCommit, LocalDate>> commitsPerRelease;
+
+    private final Map<RevCommit, List<ChangeRecord>> changes = new ConcurrentHashMap<>(); //changes per commit
+
+    public MiningSession(String project, Map<String, LocalDate> releases, String[] releaseNames, List<Bug> bugs,
+                         Map<String, Map<RevCommit, LocalDate>> commitsPerRelease) {
+        this.project = project;
+        this.releases = releases;
+        this.releaseNames = releaseNames;
+        this.bugs = bugs;
+        this.commitsPerRelease = commitsPerRelease;
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public Map<String, LocalDate> getReleases() {
+        return releases;
+    }
+
+    public String[] getReleaseNames() {
+        return releaseNames;
+    }
+
+    public List<Bug> getBugs() {
+        return bugs;
+    }
+
+    public Map<String, Map<RevCommit, LocalDate>> getCommitsPerRelease() {
+        return commitsPerRelease;
+    }
+
+    /**
+     * Retrieves the changes recorded for a commit.
+     *
+     * @param commit : the commit that produced the changes
+     *
+     * @return : recorded changes, null if the commit has not been mined yet
+     * */
+    public List<ChangeRecord> getChanges(RevCommit commit) {
+        return changes.get(commit);
+    }
+
+    /**
+     * Records the changes produced by a commit with respect to the previous one in the commit sequence.
+     * The predecessor of a commit is the same for every dataset built on the session,
+     * so the commit alone identifies the pair.
+     *
+     * @param commit : the commit that produced the changes
+     * @param records : changes to record
+     * */
+    public void recordChanges(RevCommit commit, List<ChangeRecord> records) {
+        changes.put(commit, records);
+    }
+}
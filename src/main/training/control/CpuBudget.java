@@ -0,0 +1,70 @@
+package main.training.control;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Cores available to the evaluations of the process.
+ *
+ * Every evaluation task holds a core while it runs, and the learners that train in parallel (e.g. RandomForest)
+ * borrow the cores left free by the grid: at the end of the grid, when few tasks are left, a single forest
+ * can use the whole budget.
+ * */
+public class CpuBudget {
+
+	//Instantiation: eager, the instance is shared by concurrent runs
+	private static final CpuBudget instance = new CpuBudget();
+
+	private final int size;
+	private final Semaphore cores;
+
+	private CpuBudget() {
+		int budget = Integer.parseInt(System.getProperty("cpu_budget", "0"));
+		this.size = budget <= 0 ? Runtime.getRuntime().availableProcessors() : budget;
+		this.cores = new Semaphore(size);
+	}
+
+	public static CpuBudget getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return : number of cores of the budget
+	 * */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Takes the core of an evaluation task, waiting if the budget is lent to a parallel learner.
+	 * */
+	public void acquire() throws InterruptedException {
+		cores.acquire();
+	}
+
+	/**
+	 * Borrows the free cores for a parallel learner, without waiting.
+	 *
+	 * @param max : maximum number of cores
+	 *
+	 * @return : number of borrowed cores, possibly 0
+	 * */
+	public int borrow(int max) {
+		int borrowed = 0;
+		while(borrowed < max && cores.tryAcquire()){
+			borrowed++;
+		}
+
+		return borrowed;
+	}
+
+	/**
+	 * Gives back cores taken or borrowed.
+	 *
+	 * @param count : number of cores
+	 * */
+	public void release(int count) {
+		if(count > 0){
+			cores.release(count);
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package main.training.control;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import main.training.entity.SharedInstances;
+import weka.core.DenseInstance;
+import weka.core.EuclideanDistance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.neighboursearch.NearestNeighbourSearch;
+import weka.filters.supervised.instance.SMOTE;
+
+/**
+ * SMOTE over-sampling with an indexed neighbour search.
+ *
+ * Same options and synthesis of the Weka filter (unnormalized euclidean distance among the minority instances,
+ * a random gap per attribute towards a random neighbour), but the neighbours are found with the search chosen
+ * by the NeighbourSearchSelector instead of comparing every pair of minority instances.
+ * The minority instances are processed in parallel on the cores left free by the other evaluations; every instance
+ * has its own random generator, so the synthetic instances do not depend on the number of cores.
+ * Non-numeric attributes (other than the class) are copied from the minority instance.
+ * */
+public class IndexedSMOTE extends SMOTE {
+
+	private static final long serialVersionUID = 1L;
+	private static final int MIN_CHUNK = 500; //minority instances per parallel chunk
+
+	/**
+	 * Over-samples a training set without copying its instances: the result references them and the synthetic ones.
+	 *
+	 * @param data : training set with class index set
+	 *
+	 * @return : training set with the synthetic minority instances appended
+	 * */
+	public Instances oversample(Instances data) throws Exception {
+		return new SharedInstances(data, generate(data));
+	}
+
+	/**
+	 * Same options of the Weka filter, whose raw Enumeration is narrowed here.
+	 * */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Enumeration<Option> listOptions() {
+		return super.listOptions();
+	}
+
+	/**
+	 * Filter path: pushes the input instances and then the synthetic ones.
+	 * */
+	@Override
+	protected void doSMOTE() throws Exception {
+		Instances data = getInputFormat();
+
+		for(int i=0; i<data.numInstances(); i++){
+			push((Instance) data.instance(i).copy());
+		}
+
+		for(Instance synthetic: generate(data)){
+			synthetic.setDataset(getOutputFormat());
+			push(synthetic);
+		}
+	}
+
+	/**
+	 * Creates the synthetic instances of the minority class.
+	 *
+	 * @param data : training set with class index set
+	 *
+	 * @return : synthetic instances, in the order of the minority instances they come from
+	 * */
+	private List<Instance> generate(Instances data) throws Exception {
+		int minorityClass = getMinorityClass(data);
+
+		List<Instance> references = new ArrayList<>();
+		for(Instance instance: data){
+			if((int) instance.classValue() == minorityClass){
+				references.add(instance);
+			}
+		}
+		Instances minority = new SharedInstances(new Instances(data, 0), references); //indexed, not copied
+
+		int neighbours = Math.min(getNearestNeighbors(), minority.numInstances() - 1);
+		if(neighbours < 1 || getPercentage() <= 0){ //no neighbour to interpolate with
+			return new ArrayList<>();
+		}
+
+		//synthetic instances per minority instance: the fractional part of the percentage goes to random instances
+		int[] counts = new int[minority.numInstances()];
+		Arrays.fill(counts, (int) (getPercentage()/100));
+
+		List<Integer> indexes = new ArrayList<>();
+		for(int i=0; i<counts.length; i++){
+			indexes.add(i);
+		}
+		Collections.shuffle(indexes, new Random(getRandomSeed()));
+
+		int extra = (int) Math.round((getPercentage()/100 - (int) (getPercentage()/100))*counts.length);
+		for(int i=0; i<extra; i++){
+			counts[indexes.get(i)]++;
+		}
+
+		List<List<Instance>> synthetic = synthesize(data, minority, minorityClass, counts, neighbours);
+
+		List<Instance> result = new ArrayList<>();
+		for(List<Instance> chunk: synthetic){
+			result.addAll(chunk);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Splits the minority instances in chunks, processed in parallel if free cores are available.
+	 * */
+	private List<List<Instance>> synthesize(Instances data, Instances minority, int minorityClass, int[] counts, int neighbours) throws Exception {
+		int size = minority.numInstances();
+		int borrowed = CpuBudget.getInstance().borrow(Math.max(0, size/MIN_CHUNK - 1)); //the evaluation already holds a core
+		int chunks = 1 + borrowed;
+
+		List<List<Instance>> synthetic = new ArrayList<>(chunks);
+		try {
+			if(chunks == 1){
+				synthetic.add(synthesize(data, minority, minorityClass, counts, neighbours, 0, size));
+				return synthetic;
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(chunks);
+			try {
+				List<Future<List<Instance>>> futures = new ArrayList<>();
+				for(int c=0; c<chunks; c++){
+					int from = (int) ((long) size*c/chunks);
+					int to = (int) ((long) size*(c + 1)/chunks);
+					futures.add(executor.submit(() -> synthesize(data, minority, minorityClass, counts, neighbours, from, to)));
+				}
+
+				for(Future<List<Instance>> future: futures){ //in chunk order
+					synthetic.add(future.get());
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+
+			return synthetic;
+		} finally {
+			CpuBudget.getInstance().release(borrowed);
+		}
+	}
+
+	/**
+	 * Creates the synthetic instances of a range of minority instances, with a neighbour search of its own
+	 * (the searches keep the state of the last query).
+	 * */
+	private List<Instance> synthesize(Instances data, Instances minority, int minorityClass, int[] counts, int neighbours,
+									  int from, int to) throws Exception {
+		EuclideanDistance distance = new EuclideanDistance();
+		distance.setDontNormalize(true); //same distance of the Weka filter
+
+		NearestNeighbourSearch search = NeighbourSearchSelector.select(minority);
+		search.setDistanceFunction(distance);
+		search.setInstances(minority);
+
+		List<Instance> synthetic = new ArrayList<>();
+		for(int i=from; i<to; i++){
+			if(counts[i] == 0){
+				continue;
+			}
+
+			Instance instance = minority.instance(i);
+			Instance[] nearest = getNeighbours(search, instance, neighbours);
+
+			Random random = new Random(getRandomSeed() + 31L*i);
+			for(int s=0; s<counts[i]; s++){
+				Instance neighbour = nearest[random.nextInt(nearest.length)];
+
+				double[] values = instance.toDoubleArray();
+				for(int a=0; a<data.numAttributes(); a++){
+					if(a != data.classIndex() && data.attribute(a).isNumeric()){
+						values[a] += random.nextDouble()*(neighbour.value(a) - instance.value(a));
+					}
+				}
+				values[data.classIndex()] = minorityClass;
+
+				DenseInstance created = new DenseInstance(1.0, values);
+				created.setDataset(data);
+				synthetic.add(created);
+			}
+		}
+
+		return synthetic;
+	}
+
+	/**
+	 * Finds the nearest minority instances of a minority instance, excluding the instance itself.
+	 * */
+	private Instance[] getNeighbours(NearestNeighbourSearch search, Instance instance, int neighbours) throws Exception {
+		Instances found = search.kNearestNeighbours(instance, neighbours + 1); //the instance is its own nearest neighbour
+		double[] distances = search.getDistances();
+
+		Integer[] order = new Integer[found.numInstances()];
+		for(int i=0; i<order.length; i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingDouble(i -> distances[i]));
+
+		Instance[] nearest = new Instance[Math.min(neighbours, order.length - 1)];
+		for(int i=0; i<nearest.length; i++){
+			nearest[i] = found.instance(order[i + 1]); //the first one is the instance or an identical one
+		}
+
+		return nearest;
+	}
+
+	/**
+	 * Index of the class to over-sample: the one set in the options, or the least frequent one (not empty).
+	 * */
+	private int getMinorityClass(Instances data) {
+		if(!m_DetectMinorityClass){
+			return Integer.parseInt(m_ClassValueIndex) - 1;
+		}
+
+		int[] counts = new int[data.numClasses()];
+		for(Instance instance: data){
+			counts[(int) instance.classValue()]++;
+		}
+
+		int minority = -1;
+		for(int c=0; c<counts.length; c++){
+			if(counts[c] > 0 && (minority == -1 || counts[c] < counts[minority])){
+				minority = c;
+			}
+		}
+
+		return minority;
+	}
+}
@@ -0,0 +1,351 @@
+package main.training.control;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntToDoubleFunction;
+
+import main.training.entity.Predictions;
+import weka.core.Utils;
+
+/**
+ * Computes the performances of a configuration from its stored predictions, without training any classifier.
+ *
+ * The instances are ranked once per predictions: a bootstrap replica only changes the weight (number of draws)
+ * of each instance, so every metric of a replica is computed in linear time.
+ * */
+public class MetricsEngine {
+
+	private static final int POSITIVE = 1; //index of the "Yes" class
+	private static final double INSPECTED_EFFORT = 0.2; //effort budget of NPofB20
+	private static final int ITERATIONS_PER_TASK = 100;
+	private static final long SEED = 1;
+
+	private final ExecutorService executor; //runs the bootstrap replicas
+
+	public MetricsEngine(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Computes the metrics of the predictions on a test set.
+	 *
+	 * @param predictions : stored predictions
+	 *
+	 * @return : metrics by name
+	 * */
+	public Map<String, Double> computeMetrics(Predictions predictions) {
+		double[] weights = new double[predictions.size()];
+		Arrays.fill(weights, 1);
+
+		return computeMetrics(new Rankings(predictions), weights);
+	}
+
+	/**
+	 * Computes the bootstrap percentile confidence intervals of the metrics.
+	 * The replicas are drawn in parallel with fixed seeds, so the intervals are reproducible.
+	 *
+	 * @param predictions : stored predictions
+	 * @param iterations : number of bootstrap replicas
+	 * @param confidence : confidence level (e.g. 0.95)
+	 *
+	 * @return : lower and upper bound by metric name
+	 * */
+	public Map<String, double[]> computeIntervals(Predictions predictions, int iterations, double confidence) throws Exception {
+		Rankings rankings = new Rankings(predictions); //shared read-only by the replicas
+
+		List<Callable<List<Map<String, Double>>>> tasks = new ArrayList<>();
+		for(int first = 0; first < iterations; first += ITERATIONS_PER_TASK){
+			int replicas = Math.min(ITERATIONS_PER_TASK, iterations - first);
+			long seed = SEED + first;
+
+			tasks.add(() -> computeReplicas(rankings, replicas, seed));
+		}
+
+		Map<String, List<Double>> samples = new LinkedHashMap<>();
+		try {
+			for(Future<List<Map<String, Double>>> result: executor.invokeAll(tasks)){
+				for(Map<String, Double> replica: result.get()){
+					for(Map.Entry<String, Double> metric: replica.entrySet()){
+						samples.computeIfAbsent(metric.getKey(), k -> new ArrayList<>()).add(metric.getValue());
+					}
+				}
+			}
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof Exception){
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+
+		double alpha = (1 - confidence)/2;
+
+		Map<String, double[]> intervals = new LinkedHashMap<>();
+		for(Map.Entry<String, List<Double>> metric: samples.entrySet()){
+			intervals.put(metric.getKey(), new double[]{percentile(metric.getValue(), alpha), percentile(metric.getValue(), 1 - alpha)});
+		}
+
+		return intervals;
+	}
+
+	private List<Map<String, Double>> computeReplicas(Rankings rankings, int replicas, long seed) {
+		Random random = new Random(seed);
+		int size = rankings.predictions.size();
+
+		List<Map<String, Double>> results = new ArrayList<>();
+		double[] weights = new double[size];
+		for(int r=0; r<replicas; r++){
+			Arrays.fill(weights, 0);
+			for(int i=0; i<size; i++){ //draw with replacement
+				weights[random.nextInt(size)]++;
+			}
+
+			results.add(computeMetrics(rankings, weights));
+		}
+
+		return results;
+	}
+
+	private Map<String, Double> computeMetrics(Rankings rankings, double[] weights) {
+		int[] actual = rankings.predictions.getActual();
+		double[][] distributions = rankings.predictions.getDistributions();
+
+		double tp = 0;
+		double fp = 0;
+		double tn = 0;
+		double fn = 0;
+		for(int i=0; i<weights.length; i++){
+			boolean predictedYes = Utils.maxIndex(distributions[i]) == POSITIVE;
+			boolean actualYes = actual[i] == POSITIVE;
+
+			if(predictedYes){
+				if(actualYes) tp += weights[i]; else fp += weights[i];
+			}else{
+				if(actualYes) fn += weights[i]; else tn += weights[i];
+			}
+		}
+
+		double precision = tp + fp == 0 ? Double.NaN : tp/(tp + fp); //undefined as in Weka
+		double recall = tp + fn == 0 ? Double.NaN : tp/(tp + fn);
+
+		Map<String, Double> metrics = new LinkedHashMap<>();
+		metrics.put("TP", tp);
+		metrics.put("FP", fp);
+		metrics.put("TN", tn);
+		metrics.put("FN", fn);
+		metrics.put("Precision", precision);
+		metrics.put("Recall", recall);
+		metrics.put("F1", precision + recall == 0 ? 0 : 2*precision*recall/(precision + recall));
+		metrics.put("MCC", computeMCC(tp, fp, tn, fn));
+		metrics.put("Kappa", computeKappa(tp, fp, tn, fn));
+		metrics.put("AUC", computeAUC(rankings, weights));
+		metrics.put("Popt", computePopt(rankings, weights));
+		metrics.put("NPofB20", computeNPofB(rankings, weights));
+
+		return metrics;
+	}
+
+	private double percentile(List<Double> values, double quantile) {
+		List<Double> defined = new ArrayList<>();
+		for(Double value: values){
+			if(!value.isNaN()){
+				defined.add(value);
+			}
+		}
+
+		if(defined.isEmpty()){
+			return Double.NaN;
+		}
+
+		Collections.sort(defined);
+		int idx = (int) Math.round(quantile*(defined.size() - 1));
+		return defined.get(idx);
+	}
+
+	private double computeMCC(double tp, double fp, double tn, double fn) {
+		double denominator = Math.sqrt((tp + fp)*(tp + fn)*(tn + fp)*(tn + fn));
+		if(denominator == 0){
+			return 0;
+		}
+
+		return (tp*tn - fp*fn)/denominator;
+	}
+
+	private double computeKappa(double tp, double fp, double tn, double fn) {
+		double tot = tp + fp + tn + fn;
+		if(tot == 0){
+			return 0;
+		}
+
+		double observed = (tp + tn)/tot;
+		double expected = ((tp + fp)*(tp + fn) + (fn + tn)*(fp + tn))/(tot*tot);
+		if(expected == 1){
+			return 0;
+		}
+
+		return (observed - expected)/(1 - expected);
+	}
+
+	/**
+	 * Area under the ROC curve, as the probability that a defective instance is ranked above a clean one (ties count half).
+	 * */
+	private double computeAUC(Rankings rankings, double[] weights) {
+		int[] order = rankings.byScore;
+		int[] actual = rankings.predictions.getActual();
+		double[][] distributions = rankings.predictions.getDistributions();
+
+		double positives = 0;
+		double negatives = 0;
+		double area = 0;
+
+		int i = 0;
+		while(i < order.length){ //ascending scores, groups of tied scores
+			double groupPositives = 0;
+			double groupNegatives = 0;
+
+			int j = i;
+			while(j < order.length && distributions[order[j]][POSITIVE] == distributions[order[i]][POSITIVE]){
+				if(actual[order[j]] == POSITIVE){
+					groupPositives += weights[order[j]];
+				}else{
+					groupNegatives += weights[order[j]];
+				}
+				j++;
+			}
+
+			area += groupPositives*(negatives + groupNegatives/2);
+			positives += groupPositives;
+			negatives += groupNegatives;
+
+			i = j;
+		}
+
+		if(positives == 0 || negatives == 0){
+			return Double.NaN;
+		}
+
+		return area/(positives*negatives);
+	}
+
+	/**
+	 * Effort-aware Popt: area between the cumulative lift chart of the model and the optimal one,
+	 * normalized by the area between the optimal and the worst one.
+	 * */
+	private double computePopt(Rankings rankings, double[] weights) {
+		double optimalArea = computeLiftArea(rankings, rankings.optimal, weights);
+		double worstArea = computeLiftArea(rankings, rankings.worst, weights);
+		if(optimalArea == worstArea){
+			return Double.NaN;
+		}
+
+		return 1 - (optimalArea - computeLiftArea(rankings, rankings.byDensity, weights))/(optimalArea - worstArea);
+	}
+
+	/**
+	 * Effort-aware recall: fraction of the defective instances found inspecting the instances ranked first by the model,
+	 * within a budget of 20% of the total effort.
+	 * */
+	private double computeNPofB(Rankings rankings, double[] weights) {
+		int[] actual = rankings.predictions.getActual();
+		double[] effort = rankings.effort;
+
+		double totalEffort = 0;
+		double totalDefective = 0;
+		for(int i=0; i<weights.length; i++){
+			totalEffort += effort[i]*weights[i];
+			totalDefective += actual[i] == POSITIVE ? weights[i] : 0;
+		}
+
+		if(totalDefective == 0){
+			return Double.NaN;
+		}
+
+		double spent = 0;
+		double found = 0;
+		for(int idx: rankings.byDensity){
+			spent += effort[idx]*weights[idx];
+			if(spent > INSPECTED_EFFORT*totalEffort){
+				break;
+			}
+
+			found += actual[idx] == POSITIVE ? weights[idx] : 0;
+		}
+
+		return found/totalDefective;
+	}
+
+	private double computeLiftArea(Rankings rankings, int[] order, double[] weights) {
+		int[] actual = rankings.predictions.getActual();
+		double[] effort = rankings.effort;
+
+		double totalEffort = 0;
+		double totalDefective = 0;
+		for(int i=0; i<weights.length; i++){
+			totalEffort += effort[i]*weights[i];
+			totalDefective += actual[i] == POSITIVE ? weights[i] : 0;
+		}
+
+		if(totalDefective == 0){
+			return 0;
+		}
+
+		double area = 0;
+		double found = 0;
+		for(int idx: order){ //trapezoids of the cumulative %defective over cumulative %effort
+			double previous = found/totalDefective;
+			found += actual[idx] == POSITIVE ? weights[idx] : 0;
+
+			area += (effort[idx]*weights[idx]/totalEffort)*(previous + found/totalDefective)/2;
+		}
+
+		return area;
+	}
+
+	/**
+	 * Orders of the test instances used by the ranking metrics, computed once per predictions.
+	 * */
+	private static class Rankings {
+
+		private final Predictions predictions;
+		private final double[] effort; //at least 1, so that empty files are still inspected
+		private final int[] byScore; //ascending probability of the positive class
+		private final int[] byDensity; //model ranking: descending probability per unit of effort
+		private final int[] optimal; //defective first, smaller first
+		private final int[] worst; //ascending actual density: clean first, then defective from the largest
+
+		private Rankings(Predictions predictions) {
+			this.predictions = predictions;
+
+			int[] actual = predictions.getActual();
+			double[][] distributions = predictions.getDistributions();
+
+			effort = new double[predictions.size()];
+			for(int i=0; i<effort.length; i++){
+				effort[i] = Math.max(predictions.getEffort()[i], 1);
+			}
+
+			byScore = sortBy(i -> distributions[i][POSITIVE]);
+			byDensity = sortBy(i -> -distributions[i][POSITIVE]/effort[i]);
+			optimal = sortBy(i -> (actual[i] == POSITIVE ? -1 : 1)/effort[i]);
+			worst = sortBy(i -> actual[i] == POSITIVE ? 1/effort[i] : 0);
+		}
+
+		private int[] sortBy(IntToDoubleFunction key) {
+			Integer[] order = new Integer[predictions.size()];
+			for(int i=0; i<order.length; i++){
+				order[i] = i;
+			}
+
+			Arrays.sort(order, Comparator.comparingDouble(key::applyAsDouble));
+
+			int[] sorted = new int[order.length];
+			for(int i=0; i<order.length; i++){
+				sorted[i] = order[i];
+			}
+
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package main.training.control;
+
+import weka.core.Instances;
+import weka.core.neighboursearch.BallTree;
+import weka.core.neighboursearch.CoverTree;
+import weka.core.neighboursearch.KDTree;
+import weka.core.neighboursearch.LinearNNSearch;
+import weka.core.neighboursearch.NearestNeighbourSearch;
+
+/**
+ * Chooses the nearest neighbour search of the lazy classifiers from the size and the dimensionality of the training set.
+ *
+ * Small sets are searched linearly: building an index costs more than the queries it saves.
+ * A KD-tree prunes well while the dimensions are few compared to the instances (all the metrics of the dataset,
+ * or the ones kept by the feature selection), otherwise a ball tree is used.
+ * The cover tree is not chosen: the many duplicated values of the metrics (e.g. files never changed) make it
+ * slower than the linear search. The searches are exact, so the neighbours are the same of the linear search.
+ * */
+public class NeighbourSearchSelector {
+
+	private static final int MIN_INDEXED_INSTANCES = 1000;
+	private static final int MAX_KDTREE_DIMENSIONS = 16;
+
+	private NeighbourSearchSelector() { /**/ }
+
+	/**
+	 * Creates the search for a training set.
+	 *
+	 * @param trainingSet : training set with class index set
+	 *
+	 * @return : new, not built, nearest neighbour search
+	 * */
+	public static NearestNeighbourSearch select(Instances trainingSet) {
+		return select(trainingSet, trainingSet.numInstances());
+	}
+
+	/**
+	 * Creates the search for a training set that grows with updates (the indexed searches are updated with the model):
+	 * it is chosen from the largest size the training set reaches.
+	 *
+	 * @param structure : header of the training set with class index set
+	 * @param numInstances : largest number of training instances
+	 *
+	 * @return : new, not built, nearest neighbour search
+	 * */
+	public static NearestNeighbourSearch select(Instances structure, int numInstances) {
+		int dimensions = structure.numAttributes() - 1; //without the class
+
+		if(numInstances < MIN_INDEXED_INSTANCES){
+			return new LinearNNSearch();
+		}
+
+		if(dimensions <= MAX_KDTREE_DIMENSIONS){
+			return new KDTree();
+		}
+
+		return new BallTree();
+	}
+
+	/**
+	 * Creates a search by name, used to compare the searches.
+	 *
+	 * @param name : Linear, KDTree, BallTree or CoverTree
+	 *
+	 * @return : new, not built, nearest neighbour search
+	 * */
+	public static NearestNeighbourSearch create(String name) {
+		switch(name){
+			case "Linear":
+				return new LinearNNSearch();
+			case "KDTree":
+				return new KDTree();
+			case "BallTree":
+				return new BallTree();
+			case "CoverTree":
+				return new CoverTree();
+			default:
+				throw new IllegalArgumentException("Invalid neighbour search: " + name);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package main.training.control;
+
+import java.util.*;
+
+import main.dataset.entity.FileMetadata;
+import main.utils.InstancesManager;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Scores the defect risk of the files with a trained model.
+ *
+ * The files are described with the same features of the dataset, so the model can be any classifier trained by the
+ * analysis (or on the same dataset). The risk is the probability of the defective class.
+ * */
+public class RiskScorer {
+
+	private final Classifier model;
+	private final Instances header;
+	private final int defectiveClass;
+
+	/**
+	 * @param model : model trained on the dataset of the project
+	 * @param datasetName : name of the dataset
+	 * */
+	public RiskScorer(Classifier model, String datasetName) {
+		this.model = model;
+		this.header = InstancesManager.getInstance().createHeader(datasetName);
+		this.defectiveClass = header.classAttribute().indexOfValue("Yes");
+	}
+
+	/**
+	 * Trains a copy of a classifier on the dataset of the project.
+	 *
+	 * @param classifier : classifier to train
+	 * @param dataset : instances with class index set
+	 *
+	 * @return : trained model
+	 * */
+	public static Classifier train(Classifier classifier, Instances dataset) throws Exception {
+		Classifier model = AbstractClassifier.makeCopy(classifier);
+		model.buildClassifier(dataset);
+
+		return model;
+	}
+
+	/**
+	 * Computes the defect risk of the files in a release.
+	 *
+	 * @param files : files to score
+	 * @param release : release of the files
+	 *
+	 * @return : risk per filename, from the riskiest file
+	 * */
+	public Map<String, Double> score(List<FileMetadata> files, String release) throws Exception {
+		List<Map.Entry<String, Double>> risks = new ArrayList<>();
+
+		for(FileMetadata file: files){
+			if(file.getSize() < 0) { //same filter of the dataset
+				continue;
+			}
+
+			Instance instance = new DenseInstance(1.0, InstancesManager.getInstance().getValues(file, release));
+			instance.setDataset(header);
+			instance.setClassMissing(); //the defectiveness of the release is not known yet
+
+			risks.add(new AbstractMap.SimpleEntry<>(file.getFilename(), model.distributionForInstance(instance)[defectiveClass]));
+		}
+
+		risks.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+
+		Map<String, Double> result = new LinkedHashMap<>();
+		for(Map.Entry<String, Double> risk: risks){
+			result.put(risk.getKey(), risk.getValue());
+		}
+
+		return result;
+	}
+}
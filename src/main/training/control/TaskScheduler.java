@@ -0,0 +1,218 @@
+package main.training.control;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import main.training.entity.Configuration;
+
+/**
+ * Runs the evaluation tasks longest-first.
+ *
+ * The cost of a task is its amount of work (e.g. training instances) times the time per unit of work of its kind
+ * (classifier and pre-processing). The times per unit come from the previous runs, when available, or from a prior
+ * on the classifier. Dispatching the most expensive tasks first keeps every worker busy until the end of the grid.
+ * */
+public class TaskScheduler {
+
+	private static final Object TIMINGS_LOCK = new Object(); //the timings file is shared by concurrent runs
+	private static final double HISTORY_WEIGHT = 0.5; //weight of the previous runs in the updated times
+
+	private final ExecutorService executor;
+	private final String timingsPath; //null: timings are not persisted
+	private final Properties timings; //ms per unit of work, by kind of task
+	private final Map<String, double[]> observed = new ConcurrentHashMap<>(); //kind -> {ms, work} of this run
+
+	/**
+	 * Evaluation task with the estimate of its cost.
+	 * */
+	public static class Task {
+
+		private final String kind;
+		private final double work;
+		private final Callable<List<Configuration>> callable;
+
+		/**
+		 * @param kind : kind of task, tasks of the same kind have the same time per unit of work
+		 * @param work : amount of work of the task
+		 * @param callable : evaluation
+		 * */
+		public Task(String kind, double work, Callable<List<Configuration>> callable) {
+			this.kind = kind;
+			this.work = work;
+			this.callable = callable;
+		}
+	}
+
+	/**
+	 * Creates a scheduler that estimates the costs only from the priors.
+	 *
+	 * @param executor : executor of the tasks
+	 * */
+	public TaskScheduler(ExecutorService executor) {
+		this.executor = executor;
+		this.timingsPath = null;
+		this.timings = new Properties();
+	}
+
+	/**
+	 * Creates a scheduler that estimates the costs from the timings of the previous runs, and updates them.
+	 *
+	 * @param executor : executor of the tasks
+	 * @param timingsPath : file of the times per unit of work
+	 * */
+	public TaskScheduler(ExecutorService executor, String timingsPath) throws IOException {
+		this.executor = executor;
+		this.timingsPath = timingsPath;
+		this.timings = new Properties();
+
+		synchronized (TIMINGS_LOCK) {
+			File file = new File(timingsPath);
+			if(file.isFile()){
+				try(InputStream in = new FileInputStream(file)){
+					timings.load(in);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the tasks, the most expensive first.
+	 *
+	 * @param tasks : evaluation tasks
+	 *
+	 * @return : results in the same order of the tasks
+	 * */
+	public List<Configuration> run(List<Task> tasks) throws Exception {
+		Integer[] order = new Integer[tasks.size()];
+		double[] costs = new double[tasks.size()];
+		for(int i=0; i<order.length; i++){
+			order[i] = i;
+			costs[i] = estimate(tasks.get(i));
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(costs[b], costs[a])); //longest first
+
+		List<Future<List<Configuration>>> futures = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+		for(int idx: order){
+			Task task = tasks.get(idx);
+			futures.set(idx, executor.submit(() -> time(task)));
+		}
+
+		List<Configuration> results = new ArrayList<>();
+		try {
+			for(Future<List<Configuration>> future: futures){
+				results.addAll(future.get());
+			}
+		} catch (ExecutionException e) {
+			for(Future<List<Configuration>> future: futures){
+				future.cancel(true);
+			}
+
+			if(e.getCause() instanceof Exception){
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+
+		storeTimings();
+		return results;
+	}
+
+	/**
+	 * Estimates the duration of a task.
+	 *
+	 * @param task : evaluation task
+	 *
+	 * @return : estimated duration (ms)
+	 * */
+	public double estimate(Task task) {
+		String rate = timings.getProperty(task.kind);
+		if(rate != null){
+			return Double.parseDouble(rate)*task.work;
+		}
+
+		return getPrior(task.kind)*task.work;
+	}
+
+	private List<Configuration> time(Task task) throws Exception {
+		CpuBudget.getInstance().acquire(); //the task holds a core of the budget
+		long start = System.nanoTime();
+		List<Configuration> result;
+		try {
+			result = task.callable.call();
+		} finally {
+			CpuBudget.getInstance().release(1);
+		}
+		double elapsed = (System.nanoTime() - start)/1e6;
+
+		observed.merge(task.kind, new double[]{elapsed, task.work}, (a, b) -> new double[]{a[0] + b[0], a[1] + b[1]});
+		return result;
+	}
+
+	/**
+	 * Time per unit of work of a kind never observed: relative weight of the classifier, increased by the pre-processing.
+	 * */
+	private double getPrior(String kind) {
+		double rate;
+		if(kind.startsWith("RandomForest")){
+			rate = 0.5;
+		}else if(kind.startsWith("IBk")){
+			rate = 0.0001; //work of lazy learners is training x test instances
+		}else if(kind.startsWith("NaiveBayes")){
+			rate = 0.005;
+		}else{
+			rate = 0.0005;
+		}
+
+		if(kind.contains("Forward search")){
+			rate *= 1.5;
+		}
+		if(kind.contains("Sensitive learning")){
+			rate *= 1.2;
+		}
+
+		return rate;
+	}
+
+	private void storeTimings() throws IOException {
+		if(timingsPath == null || observed.isEmpty()){
+			return;
+		}
+
+		synchronized (TIMINGS_LOCK) {
+			Properties stored = new Properties();
+			File file = new File(timingsPath);
+			if(file.isFile()){
+				try(InputStream in = new FileInputStream(file)){
+					stored.load(in);
+				}
+			}
+
+			for(Map.Entry<String, double[]> entry: observed.entrySet()){
+				double[] sums = entry.getValue();
+				if(sums[1] == 0){
+					continue;
+				}
+
+				double rate = sums[0]/sums[1];
+				String previous = stored.getProperty(entry.getKey());
+				if(previous != null){
+					rate = HISTORY_WEIGHT*Double.parseDouble(previous) + (1 - HISTORY_WEIGHT)*rate;
+				}
+
+				stored.setProperty(entry.getKey(), String.valueOf(rate));
+				timings.setProperty(entry.getKey(), String.valueOf(rate));
+			}
+
+			try(OutputStream out = new FileOutputStream(file)){
+				stored.store(out, "Evaluation time (ms) per unit of work");
+			}
+		}
+
+		observed.clear();
+	}
+}
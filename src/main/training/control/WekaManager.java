@@ -1,50 +1,96 @@
 package main.training.control;
 
-import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import javafx.util.Pair;
 import main.training.entity.Configuration;
+import main.training.entity.Fold;
+import main.training.entity.Predictions;
+import main.training.entity.SharedInstances;
 import main.utils.LoggingUtils;
+import main.utils.ModelCache;
+import main.utils.PredictionStore;
+import main.utils.ReleaseStore;
+import main.utils.ResultsCheckpoint;
 import weka.attributeSelection.ASSearch;
 import weka.classifiers.rules.ZeroR;
-import weka.core.converters.ArffLoader;
-import weka.core.converters.ArffSaver;
-import weka.filters.supervised.attribute.AttributeSelection;
+import weka.attributeSelection.AttributeSelection;
 import weka.attributeSelection.BestFirst;
 import weka.attributeSelection.CfsSubsetEval;
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.CostMatrix;
+import weka.classifiers.ParallelIteratedSingleClassifierEnhancer;
+import weka.classifiers.UpdateableClassifier;
 import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
 import weka.classifiers.evaluation.Evaluation;
 import weka.classifiers.lazy.IBk;
+import weka.classifiers.meta.Bagging;
 import weka.classifiers.meta.CostSensitiveClassifier;
-import weka.classifiers.meta.FilteredClassifier;
 import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
+import weka.core.BatchPredictor;
+import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.converters.CSVLoader;
+import weka.core.OptionHandler;
+import weka.core.Utils;
+import weka.experiment.PairedStats;
 import weka.filters.Filter;
 import weka.filters.supervised.instance.Resample;
 import weka.filters.supervised.instance.SpreadSubsample;
+import weka.filters.unsupervised.attribute.Remove;
 
 /**
  * Uses Weka API to perform a machine learning classification on the dataset.
  * */
 public class WekaManager {
 
-	protected Instances trainingSet;
-	protected Instances testSet;
+	protected final ExecutorService executor; //runs the evaluation of the configurations
+	protected TaskScheduler scheduler; //dispatches the evaluations longest-first
+
+	private static final double RACING_SIGNIFICANCE = 0.05;
+	private final String racingMetric; //AUC or Kappa, empty if every configuration is evaluated on every fold
+	private final int racingFolds; //folds evaluated between two races
+	private final Map<Configuration, Map<Integer, Double>> racingScores = new ConcurrentHashMap<>();
+	private final Map<Configuration, Integer> prunedConfigurations = new LinkedHashMap<>();
+	protected final boolean updateableTraining; //walk-forward: updateable classifiers are trained incrementally
+	private final int batchSize; //test instances per call of the batch predictors
+	private final AtomicLong batchPredictions = new AtomicLong(); //test instances predicted in batches
 
 	protected List<Configuration> configurations;
 
+	private PredictionStore predictionStore; //optional: keeps the predictions of every evaluation
+	private ModelCache modelCache; //optional: trained models reused by later runs
+	private ResultsCheckpoint checkpoint; //optional: results saved as soon as they are evaluated
+	private WorkerPool workers; //optional: evaluations run by worker processes
+	private Consumer<Configuration> resultListener; //optional: notified of every result as soon as it is evaluated
+
 	/**
 	 * Prepares the Weka analysis with every possible configuration of:
 	 * 	- Feature selection models
 	 * 	- Sampling models
 	 * 	- Classifiers
 	 * 	- Cost matrices
+	 *
+	 * @param executor : executor of the evaluation tasks
 	 * */
-	public WekaManager() {
+	public WekaManager(ExecutorService executor) {
+		this.executor = executor;
+		this.scheduler = new TaskScheduler(executor);
+		this.racingMetric = System.getProperty("racing_metric", "").trim();
+		this.racingFolds = Math.max(2, Integer.parseInt(System.getProperty("racing_folds", "3"))); //a paired test needs 2 folds
+		if(!racingMetric.isEmpty() && !racingMetric.equals("AUC") && !racingMetric.equals("Kappa")){
+			throw new IllegalArgumentException("Invalid racing metric: " + racingMetric);
+		}
+		this.updateableTraining = Boolean.parseBoolean(System.getProperty("updateable_training", "false"));
+		this.batchSize = Math.max(1, Integer.parseInt(System.getProperty("batch_size", "100")));
+
 		Classifier[] classifiers = prepareClassifiers();
 		ASSearch[] featSelection = prepareFeaturesSelection();
 		Filter[] samplings = prepareSampling();
@@ -53,6 +99,41 @@ public class WekaManager {
 		configureAnalysis(classifiers, featSelection, samplings, sensitivities);
 	}
 
+	public void setPredictionStore(PredictionStore predictionStore) {
+		this.predictionStore = predictionStore;
+	}
+
+	public void setModelCache(ModelCache modelCache) {
+		this.modelCache = modelCache;
+	}
+
+	public void setScheduler(TaskScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	public void setCheckpoint(ResultsCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	public void setWorkers(WorkerPool workers) {
+		this.workers = workers;
+	}
+
+	public void setResultListener(Consumer<Configuration> resultListener) {
+		this.resultListener = resultListener;
+	}
+
+	/**
+	 * @return : test instances predicted in batches so far, e.g. to check that the ensembles take the batch path
+	 * */
+	public long getBatchPredictions() {
+		return batchPredictions.get();
+	}
+
+	public List<Configuration> getConfigurations() {
+		return configurations;
+	}
+
 	private ASSearch[] prepareFeaturesSelection() {
 
 		ASSearch[] featSel = new ASSearch[2];
@@ -66,7 +147,7 @@ public class WekaManager {
 	}
 
 	private Filter[] prepareSampling() {
-		Filter[] sampling = new Filter[3];
+		Filter[] sampling = new Filter[4];
 
 		sampling[0] = null; // no sampling
 
@@ -79,6 +160,9 @@ public class WekaManager {
 		spreadSubsample.setDistributionSpread(1.0);
 		sampling[2] = spreadSubsample; //under-sampling
 
+		IndexedSMOTE smote = new IndexedSMOTE(); // 5 nearest neighbours
+		sampling[3] = smote; //synthetic over-sampling
+
 		return sampling;
 	}
 
@@ -89,7 +173,7 @@ public class WekaManager {
 		classifiers[0] = zeroR; // BASELINE: dummy classifier
 
 		RandomForest randomForest = new RandomForest();
-		classifiers[1] = randomForest; // TREE: forest of 100 random trees with unlimited depth
+		classifiers[1] = randomForest; // TREE: forest of 100 random trees with unlimited depth, trees built on the free cores
 
 		NaiveBayes naiveBayes = new NaiveBayes();
 		classifiers[2] = naiveBayes; // PROBABILISTIC: bayesian "naive" classification
@@ -158,289 +242,1033 @@ public class WekaManager {
 	/**
 	 * Executes the ML analysis on the dataset.
 	 *
-	 * @param datasetName : path of the dataset file
-	 * @param values : number of files per release
+	 * @param sets : instances separated by release, in release order
 	 *
-	 * @return : list of Configuration instances to give output analysis
+	 * @return : list of Configuration instances to give output analysis (empty if saved on a checkpoint)
 	 * */
-	public List<Configuration> setWeka(String datasetName, List<Integer> values) throws Exception {
+	public List<Configuration> setWeka(List<Instances> sets) throws Exception {
+		List<Fold> folds = prepareFolds(sets); //built once, shared by every configuration
+
+		if(racingMetric.isEmpty()){
+			return scheduler.run(createTasks(configurations, folds, 0, folds.size()));
+		}
+
+		//racing: the folds are evaluated in rounds, the configurations worse than the best one are dropped after each round
+		List<Configuration> localConfigurations = new ArrayList<>();
+		List<Configuration> active = new ArrayList<>();
+		List<Configuration> chained = new ArrayList<>(); //trained incrementally on every fold in the first round
+		for(Configuration config: configurations){
+			(isIncremental(config) ? chained : active).add(config);
+		}
+
+		for(int from = 0; from < folds.size(); from += racingFolds){
+			int to = Math.min(from + racingFolds, folds.size());
+
+			List<TaskScheduler.Task> tasks = createTasks(active, folds, from, to);
+			if(from == 0){
+				tasks.addAll(createTasks(chained, folds, 0, folds.size()));
+			}
+			localConfigurations.addAll(scheduler.run(tasks));
+
+			if(to < folds.size()){
+				active = race(active, folds.get(to - 1));
+			}
+		}
 
-		String arffDataset = convertCSVToArff(datasetName); //get the arff from the csv
+		return localConfigurations;
+	}
 
-		//Load the dataset
-		ArffLoader loader = new ArffLoader();
-		loader.setSource(new File(arffDataset));
+	/**
+	 * Builds the walk-forward folds of the dataset.
+	 *
+	 * @param sets : instances separated by release
+	 *
+	 * @return : folds, one per test release
+	 * */
+	public List<Fold> prepareFolds(List<Instances> sets) {
+		int total = 0;
+		for(Instances set: sets){
+			set.setClassIndex(set.numAttributes() - 1); //set class index
+			total += set.numInstances();
+		}
 
-		Instances data = loader.getDataSet();
-		data.setClassIndex(data.numAttributes() - 1); //set class index
+		return buildFolds(sets, total);
+	}
 
-		List<Instances> sets = separateInstances(data, values); //generate instances set per release
+	/**
+	 * Evaluates some configurations on a range of folds built once, e.g. by a long-running experiment server:
+	 * the results computed on the folds (sampled training sets, predictions) are reused by the next evaluations.
+	 * The configurations trained incrementally are also updated with the folds before the range, not evaluated.
+	 *
+	 * @param configs : configurations to evaluate, of the grid or not
+	 * @param folds : every fold, in walk-forward order
+	 * @param from : first fold to evaluate
+	 * @param to : last fold to evaluate (excluded)
+	 *
+	 * @return : list of Configuration instances to give output analysis
+	 * */
+	public List<Configuration> evaluate(List<Configuration> configs, List<Fold> folds, int from, int to) throws Exception {
+		return scheduler.run(createTasks(configs, folds, from, to));
+	}
 
-		//walk-forward
+	/**
+	 * Out-of-core walk-forward: the releases are read from disk, so the dataset is never in memory as a whole.
+	 * The folds are loaded one at a time and released before the next one, so the memory is bounded by the largest fold.
+	 * The configurations trained incrementally never load a fold: their models are updated and evaluated by reading
+	 * the releases one instance at a time.
+	 *
+	 * @param releases : dataset stored per release
+	 *
+	 * @return : list of Configuration instances to give output analysis (empty if saved on a checkpoint)
+	 * */
+	public List<Configuration> setWeka(ReleaseStore releases) throws Exception {
 		List<Configuration> localConfigurations = new ArrayList<>();
-		for(Configuration config: configurations) {
-			localConfigurations.addAll(walkForwardEvaluation(sets, config));
+
+		List<TaskScheduler.Task> streamed = new ArrayList<>();
+		List<Configuration> active = new ArrayList<>();
+		for(Configuration config: configurations){
+			if(!isIncremental(config)){
+				active.add(config);
+			}else if(!isCompleted(config, releases.size() - 1)){
+				streamed.add(new TaskScheduler.Task(getKind(config) + "|incremental", estimateWork(config, releases),
+						() -> evaluateStreaming(config, releases)));
+			}
+		}
+
+		for(int wfIndex = 1; wfIndex < releases.size(); wfIndex++){
+			Fold fold = releases.loadFold(wfIndex); //released at the end of the iteration
+
+			List<TaskScheduler.Task> tasks = createTasks(active, Collections.singletonList(fold), 0, 1);
+			if(wfIndex == 1){
+				tasks.addAll(streamed); //run along the first fold
+			}
+			localConfigurations.addAll(scheduler.run(tasks));
+
+			if(!racingMetric.isEmpty() && wfIndex % racingFolds == 0 && wfIndex < releases.size() - 1){
+				active = race(active, fold);
+			}
 		}
 
 		return localConfigurations;
 	}
 
 	/**
-	 * Converts a CSV file in an ARFF file.
+	 * Creates the tasks of the walk-forward: one task per configuration and test release.
 	 *
-	 * @param csvFile : the path of the csv file
+	 * @param configs : configurations to evaluate
+	 * @param folds : every fold, in walk-forward order
+	 * @param from : first fold to evaluate
+	 * @param to : last fold to evaluate (excluded)
 	 *
-	 * @return : new path
+	 * @return : evaluation tasks
 	 * */
-	protected String convertCSVToArff(String csvFile) throws Exception {
-		//Load CSV
-		CSVLoader loader = new CSVLoader();
-		loader.setSource(new File(csvFile));
+	private List<TaskScheduler.Task> createTasks(List<Configuration> configs, List<Fold> folds, int from, int to) {
+		List<TaskScheduler.Task> tasks = new ArrayList<>();
+		Map<Fold, Integer> pending = new IdentityHashMap<>(); //tasks per fold
+		for(Configuration config: configs) {
+			if(isIncremental(config)){ //folds of the configuration chained in a single task, never raced
+				if(!isCompleted(config, folds.get(to - 1))){
+					List<Fold> chain = folds.subList(0, to); //the folds before the range only update the model
+					double work = 0;
+					for(Fold fold: chain) {
+						work += estimateWork(config, fold);
+					}
 
-		loader.setOptions(new String[]{"-L", "Buggy:No,Yes"}); //Some sets may not have positive instances
+					tasks.add(new TaskScheduler.Task(getKind(config) + "|incremental", work, () -> evaluateIncrementally(config, chain, from)));
+				}
+				continue;
+			}
 
-		//Save ARFF
-		ArffSaver saver = new ArffSaver();
-		saver.setInstances(loader.getDataSet());
+			for(Fold fold: folds.subList(from, to)) {
+				if(!isCompleted(config, fold)){ //not saved by a previous run
+					tasks.add(createTask(config, fold));
+					pending.merge(fold, 1, Integer::sum);
+				}
+			}
+		}
 
-		saver.getInstances().deleteAttributeAt(0); //project
-		saver.getInstances().deleteAttributeAt(0); //version
-		saver.getInstances().deleteAttributeAt(0); //filename
+		if(workers != null){ //the workers drop a fold when its tasks are done
+			for(Map.Entry<Fold, Integer> fold: pending.entrySet()){
+				workers.expect(fold.getKey(), fold.getValue());
+			}
+		}
 
-		String arffFile = csvFile.replace(".csv", ".arff");
+		return tasks;
+	}
 
-		saver.setFile(new File(arffFile));
-		saver.writeBatch();
+	/**
+	 * Creates the task that evaluates a configuration on a fold, in this process or on a worker process if set.
+	 *
+	 * @param config : model configuration
+	 * @param fold : training and test set
+	 *
+	 * @return : evaluation task
+	 * */
+	protected TaskScheduler.Task createTask(Configuration config, Fold fold) {
+		if(workers == null){
+			return new TaskScheduler.Task(getKind(config), estimateWork(config, fold),
+					() -> record(config, fold, evaluateConfiguration(config, fold)));
+		}
 
-		return arffFile;
+		return new TaskScheduler.Task(getKind(config), estimateWork(config, fold),
+				() -> record(config, fold, evaluateOnWorker(config, fold)));
 	}
 
 	/**
-	 * Prepares folds to execute a Walk-forward training approach.
-	 * Separates the dataset per release.
+	 * Evaluates a configuration on a fold in a worker process.
+	 * The worker has the same grid of configurations, so the configuration is identified by its index.
+	 * If every worker failed (terminated or out of memory), the configuration is evaluated in this process.
+	 *
+	 * @param config : model configuration
+	 * @param fold : training and test set
+	 *
+	 * @return : new configuration with the performances on the fold
 	 * */
-	public List<Instances> separateInstances(Instances instances, List<Integer> values) {
-		List<Instances> res = new ArrayList<>();
+	private Configuration evaluateOnWorker(Configuration config, Fold fold) throws Exception {
+		Worker.Result result;
+		try {
+			result = workers.evaluate(configurations.indexOf(config), fold, predictionStore != null);
+		} catch (IOException e) {
+			LoggingUtils.logString("Evaluation moved to the coordinator: ", e.getMessage());
+			return evaluateConfiguration(config, fold);
+		}
 
-		int tot = instances.numInstances();
+		if(result.getPredictions() != null){
+			predictionStore.write(result.getPredictions());
+		}
 
-		int copied = 0;
-		int toCopy;
-		int remaining;
-		for(int numFiles: values){
-			remaining = tot - copied;
-			toCopy = Math.min(numFiles, remaining); //to overcome out of bound exceptions
+		return result.getConfiguration();
+	}
 
-			res.add(new Instances(instances, copied, toCopy));
+	/**
+	 * Drops the configurations whose racing metric is significantly worse than the one of the best configuration,
+	 * with a paired t-test on the folds evaluated so far.
+	 *
+	 * @param active : configurations still in the race
+	 * @param last : last evaluated fold
+	 *
+	 * @return : configurations that stay in the race
+	 * */
+	private List<Configuration> race(List<Configuration> active, Fold last) {
+		Configuration best = null;
+		double bestMean = Double.NEGATIVE_INFINITY;
+		for(Configuration config: active){
+			double mean = getMeanScore(config);
+			if(!isIncremental(config) && mean > bestMean){
+				best = config;
+				bestMean = mean;
+			}
+		}
 
-			copied += toCopy;
+		if(best == null){
+			return active;
 		}
 
-		return res;
+		Map<Integer, Double> bestScores = racingScores.getOrDefault(best, Collections.emptyMap());
+
+		List<Configuration> survivors = new ArrayList<>();
+		for(Configuration config: active){
+			if(config == best || isIncremental(config)){
+				survivors.add(config);
+				continue;
+			}
+
+			PairedStats stats = new PairedStats(RACING_SIGNIFICANCE);
+			for(Map.Entry<Integer, Double> score: racingScores.getOrDefault(config, Collections.emptyMap()).entrySet()){
+				Double bestScore = bestScores.get(score.getKey());
+				if(bestScore != null && !bestScore.isNaN() && !score.getValue().isNaN()){
+					stats.add(score.getValue(), bestScore);
+				}
+			}
+
+			if(stats.count >= 2){
+				stats.calculateDerived();
+			}
+
+			if(stats.count >= 2 && stats.differencesSignificance < 0){ //significantly worse than the best
+				prunedConfigurations.put(config, last.getNumTrainingReleases());
+				LoggingUtils.logString("Configuration pruned by racing: ", getKind(config) +
+						" after " + last.getNumTrainingReleases() + " training releases");
+			}else{
+				survivors.add(config);
+			}
+		}
+
+		return survivors;
+	}
+
+	private double getMeanScore(Configuration config) {
+		double sum = 0;
+		int count = 0;
+		for(double score: racingScores.getOrDefault(config, Collections.emptyMap()).values()){
+			if(!Double.isNaN(score)){
+				sum += score;
+				count++;
+			}
+		}
+
+		return count == 0 ? Double.NEGATIVE_INFINITY : sum/count;
 	}
 
 	/**
-	 * Implements Walk-forward method to train and test the classifier with chosen model configuration.
-	 * @param sets : instances separated by release
-	 * @param config :
+	 * @return : configurations pruned by racing, with the number of training releases of the last fold they were evaluated on
+	 * */
+	public Map<Configuration, Integer> getPrunedConfigurations() {
+		return prunedConfigurations;
+	}
+
+	/**
+	 * Estimates the amount of work to evaluate a configuration on a fold: the instances of the (sampled) training set,
+	 * times the test instances for the lazy classifiers.
+	 *
+	 * @param config : model configuration
+	 * @param fold : training and test set
 	 *
-	 * @return :
+	 * @return : amount of work, in the unit of the kind of the configuration
 	 * */
-	protected List<Configuration> walkForwardEvaluation(List<Instances> sets, Configuration config) throws Exception {
-		List<Configuration> localConfig = new ArrayList<>();
+	protected double estimateWork(Configuration config, Fold fold) {
+		double work = fold.getTrainingSet().numInstances();
 
-		//Configuration
-		ASSearch filter = config.getFeatSelection();
-		Filter sampling;
+		int minority = fold.getDefectiveTraining();
+		Filter sampling = config.getSampling();
+		if(sampling != null && minority != 0) {
+			work = sampling.getClass() == SpreadSubsample.class ? 2*minority : 2*(work - minority); //balanced classes
+		}
+
+		if(config.getClassifier() instanceof IBk) {
+			work *= fold.getTestSet().numInstances();
+		}
+
+		return work;
+	}
+
+	/**
+	 * Estimates the amount of work of the out-of-core incremental evaluation, from the sizes of the stored releases.
+	 *
+	 * @param config : model configuration
+	 * @param releases : dataset stored per release
+	 *
+	 * @return : amount of work, in the unit of the kind of the configuration
+	 * */
+	private double estimateWork(Configuration config, ReleaseStore releases) {
+		double work = 0;
+
+		int training = releases.getNumInstances(0);
+		for(int wfIndex = 1; wfIndex < releases.size(); wfIndex++){
+			int test = releases.getNumInstances(wfIndex);
+			work += config.getClassifier() instanceof IBk ? (double) training*test : training;
+			training += test;
+		}
+
+		return work;
+	}
+
+	/**
+	 * Identifies the kind of a configuration: configurations of the same kind take the same time per unit of work.
+	 *
+	 * @param config : model configuration
+	 *
+	 * @return : classifier and pre-processing methods
+	 * */
+	protected String getKind(Configuration config) {
+		return config.getClassifierName() + "|" + config.getSamplingMethod() + "|" +
+				config.getFeatSelectionMethod() + "|" + config.getSensitivityMethod();
+	}
+
+	/**
+	 * Checks if a configuration can be trained incrementally along the walk-forward:
+	 * the classifier must be updateable and the training set must not be pre-processed or re-weighted.
+	 *
+	 * @param config : model configuration
+	 *
+	 * @return : true if the model of a fold can be updated to obtain the model of the next one
+	 * */
+	protected boolean isIncremental(Configuration config) {
+		Classifier classifier = config.getClassifier();
+
+		return updateableTraining && config.getFeatSelection() == null && config.getSampling() == null &&
+				config.getSensitivity() == null &&
+				(classifier instanceof UpdateableClassifier || classifier.getClass() == NaiveBayes.class);
+	}
+
+	/**
+	 * Evaluates a configuration on the last folds, in walk-forward order, with a single model:
+	 * the model is built on the first training set and then updated with the release added by every following fold.
+	 * The folds before the first evaluated one only update the model, so the results do not depend on the range.
+	 *
+	 * @param config : model configuration
+	 * @param folds : folds in walk-forward order, from the first one
+	 * @param from : first fold to evaluate
+	 *
+	 * @return : new configurations with the performances on each evaluated fold
+	 * */
+	protected List<Configuration> evaluateIncrementally(Configuration config, List<Fold> folds, int from) throws Exception {
+		Classifier baseClassifier = config.getClassifier();
 		Classifier classifier;
-		Classifier baseClassifier = config.getClassifier(); //untouched copy of the classifier instance to get its name
-		CostMatrix sensitivity = config.getSensitivity();
+		if(baseClassifier.getClass() == NaiveBayes.class){
+			classifier = new NaiveBayesUpdateable(); //numeric precision set by the first training set: differs from NaiveBayes
+		}else{
+			classifier = AbstractClassifier.makeCopy(baseClassifier);
+		}
 
-		for (int i=1; i<sets.size(); i++) { //get one set at a time to use as testing
+		Instances lastTraining = folds.get(folds.size() - 1).getTrainingSet();
+		selectNeighbourSearch(classifier, lastTraining, lastTraining.numInstances());
 
-			//Init
-			classifier = config.getClassifier();
-			sampling = config.getSampling();
+		List<Configuration> results = new ArrayList<>();
 
-			buildTrainingAndTestSet(sets, i); //sets initialization
+		Fold previous = null;
+		for(int idx = 0; idx < folds.size(); idx++){
+			Fold fold = folds.get(idx);
+			if(previous == null){
+				classifier.buildClassifier(fold.getTrainingSet());
+			}else{
+				Instances release = previous.getTestSet(); //the only release added to the training set
+				for(int i=0; i<release.numInstances(); i++){
+					((UpdateableClassifier) classifier).updateClassifier(release.instance(i));
+				}
+			}
+			previous = fold;
 
-			if(filter != null){
-				classifier = applyFeatureSelection(filter, classifier); //feature selection
+			if(idx < from){ //before the range: not evaluated
+				continue;
 			}
 
-			double minority = countDefectiveInstances(trainingSet, trainingSet.numInstances());
-			if(sampling != null && minority != 0) {
-				classifier = applySampling(sampling, classifier); //sampling
-			}else{
-				sampling = null;
+			Configuration newConfig = setLocalConfiguration(fold, baseClassifier, null, null, null); //new configuration
+			newConfig.setNumTrainingReleases(fold.getNumTrainingReleases());
+
+			double[][] distributions = computeDistributions(classifier, fold.getTestSet()); //evaluation
+			Map<String,Double> performance = computeEvaluation(distributions, null, fold);
+			newConfig.setPerformances(performance);
+
+			LoggingUtils.logPerformances(newConfig, performance);
+
+			if(!isCompleted(config, fold)){ //the model is still updated with the folds saved by a previous run
+				storePredictions(newConfig, fold, distributions);
+				results.addAll(record(config, fold, newConfig));
 			}
+		}
 
-			Configuration newConfig = setLocalConfiguration(sets, baseClassifier, filter, sampling, sensitivity); //new configuration
-			newConfig.setNumTrainingReleases(i);
+		return results;
+	}
 
-			Map<String,Double> performance = computeEvaluation(classifier, sensitivity); //evaluation
+	/**
+	 * Sets the neighbour search of a lazy classifier trained incrementally: the indexed search is updated with the
+	 * model, so it is chosen from the last training set of the walk-forward.
+	 *
+	 * @param classifier : classifier to train incrementally
+	 * @param structure : header of the training sets
+	 * @param lastTraining : instances of the last training set
+	 * */
+	private static void selectNeighbourSearch(Classifier classifier, Instances structure, int lastTraining) {
+		if(classifier instanceof IBk){
+			((IBk) classifier).setNearestNeighbourSearchAlgorithm(NeighbourSearchSelector.select(structure, lastTraining));
+		}
+	}
+
+	/**
+	 * Out-of-core version of the incremental evaluation: the model is built on the first release, loaded in memory,
+	 * then every following release is read twice, one instance at a time: first to evaluate the model on it,
+	 * then to update the model with it. Only the model and the predictions on one release are kept in memory.
+	 *
+	 * @param config : model configuration, trained incrementally
+	 * @param releases : dataset stored per release
+	 *
+	 * @return : new configurations with the performances on each fold
+	 * */
+	protected List<Configuration> evaluateStreaming(Configuration config, ReleaseStore releases) throws Exception {
+		Classifier baseClassifier = config.getClassifier();
+		Classifier classifier;
+		if(baseClassifier.getClass() == NaiveBayes.class){
+			classifier = new NaiveBayesUpdateable(); //numeric precision set by the first release: differs from NaiveBayes
+		}else{
+			classifier = AbstractClassifier.makeCopy(baseClassifier);
+		}
+		int lastTraining = releases.getTotalInstances() - releases.getNumInstances(releases.size() - 1);
+		selectNeighbourSearch(classifier, releases.getStructure(), lastTraining);
+		classifier.buildClassifier(releases.load(0));
+
+		List<Configuration> results = new ArrayList<>();
+
+		int training = releases.getNumInstances(0);
+		int defectiveTraining = releases.getNumDefective(0);
+		for(int wfIndex = 1; wfIndex < releases.size(); wfIndex++){
+			int test = releases.getNumInstances(wfIndex);
+
+			Configuration newConfig = setLocalConfiguration(baseClassifier, null, null, null, training, defectiveTraining,
+					test, releases.getNumDefective(wfIndex), releases.getTotalInstances()); //new configuration
+			newConfig.setNumTrainingReleases(wfIndex);
+
+			//evaluation: the priors of the training set do not affect the recorded performances
+			Evaluation eval = new Evaluation(releases.getStructure());
+			double[][] distributions = new double[test][];
+			int[] actual = new int[test];
+			double[] effort = new double[test];
+			Attribute size = releases.getStructure().attribute("Size");
+			int[] position = {0};
+			releases.stream(wfIndex, instance -> {
+				Instance classMissing = (Instance) instance.copy();
+				classMissing.setClassMissing();
+
+				int i = position[0]++;
+				distributions[i] = classifier.distributionForInstance(classMissing);
+				actual[i] = (int) instance.classValue();
+				effort[i] = size == null ? 1 : instance.value(size.index());
+				eval.evaluateModelOnceAndRecordPrediction(distributions[i], instance);
+			});
+
+			Map<String,Double> performance = parsePerformance(eval);
 			newConfig.setPerformances(performance);
 
 			LoggingUtils.logPerformances(newConfig, performance);
 
-			localConfig.add(newConfig);
+			if(!isCompleted(config, wfIndex)){ //the model is still updated with the folds saved by a previous run
+				if(predictionStore != null){
+					predictionStore.write(new Predictions(releases.getStructure().relationName(), newConfig, actual, effort, distributions));
+				}
+				results.addAll(record(config, wfIndex, newConfig));
+			}
+
+			if(wfIndex < releases.size() - 1){ //the test release is added to the training set of the next fold
+				releases.stream(wfIndex, ((UpdateableClassifier) classifier)::updateClassifier);
+			}
+			training += test;
+			defectiveTraining += releases.getNumDefective(wfIndex);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Identifies a cell of the grid: configuration as requested (before any fold-specific change) and fold.
+	 *
+	 * @param config : model configuration
+	 * @param fold : training and test set
+	 *
+	 * @return : identifier of the cell
+	 * */
+	protected String getCell(Configuration config, Fold fold) {
+		return getCell(config, fold.getNumTrainingReleases());
+	}
+
+	private String getCell(Configuration config, int numTrainingReleases) {
+		return numTrainingReleases + "|" + configurations.indexOf(config) + "|" + getKind(config);
+	}
+
+	protected boolean isCompleted(Configuration config, Fold fold) {
+		return isCompleted(config, fold.getNumTrainingReleases());
+	}
+
+	private boolean isCompleted(Configuration config, int numTrainingReleases) {
+		return checkpoint != null && checkpoint.isCompleted(getCell(config, numTrainingReleases));
+	}
+
+	/**
+	 * Saves the result of a cell on the checkpoint, if set.
+	 *
+	 * @param config : model configuration
+	 * @param fold : training and test set
+	 * @param result : evaluated configuration
+	 *
+	 * @return : results to keep in memory, empty if saved on the checkpoint
+	 * */
+	protected List<Configuration> record(Configuration config, Fold fold, Configuration result) throws IOException {
+		return record(config, fold.getNumTrainingReleases(), result);
+	}
+
+	private List<Configuration> record(Configuration config, int numTrainingReleases, Configuration result) throws IOException {
+		if(!racingMetric.isEmpty()){
+			racingScores.computeIfAbsent(config, k -> new ConcurrentHashMap<>())
+					.put(numTrainingReleases, result.getPerformances().get(racingMetric));
+		}
+
+		if(resultListener != null){
+			resultListener.accept(result);
+		}
+
+		if(checkpoint == null){
+			return Collections.singletonList(result);
 		}
 
-		return localConfig;
+		checkpoint.append(getCell(config, numTrainingReleases), result);
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Evaluates a configuration on a walk-forward fold.
+	 * The classifier, the feature selection and the sampling filter are copied, so that every task works on its own
+	 * instances while the fold is shared read-only.
+	 *
+	 * @param config : model configuration
+	 * @param fold : training and test set
+	 *
+	 * @return : new configuration with the performances on the fold
+	 * */
+	protected Configuration evaluateConfiguration(Configuration config, Fold fold) throws Exception {
+		//Configuration
+		ASSearch filter = config.getFeatSelection();
+		Filter sampling = config.getSampling();
+		Classifier classifier = AbstractClassifier.makeCopy(config.getClassifier());
+		Classifier baseClassifier = config.getClassifier(); //untouched instance of the classifier to get its name
+		CostMatrix sensitivity = config.getSensitivity();
+
+		Fold evaluationFold = fold;
+
+		if(sampling != null && fold.getDefectiveTraining() != 0) {
+			evaluationFold = getSampledFold(fold, sampling); //sampling, shared
+		}else{
+			sampling = null;
+		}
+
+		if(filter != null){
+			evaluationFold = getSelectedFold(evaluationFold, filter); //feature selection, shared
+		}
+
+		Configuration newConfig = setLocalConfiguration(fold, baseClassifier, filter, sampling, sensitivity); //new configuration
+		newConfig.setNumTrainingReleases(fold.getNumTrainingReleases());
+
+		double[][] distributions = computeDistributions(classifier, sensitivity, evaluationFold); //evaluation
+		Map<String,Double> performance = computeEvaluation(distributions, sensitivity, evaluationFold);
+		newConfig.setPerformances(performance);
+
+		storePredictions(newConfig, fold, distributions);
+		LoggingUtils.logPerformances(newConfig, performance);
+
+		return newConfig;
 	}
 
 	/**
 	 * Initializes the training and test sets with the walk forward method.
+	 * The training set of a fold extends the one of the previous fold with the previous test release,
+	 * without copying the instances.
 	 *
 	 * @param sets : instances separated by release
-	 * @param wfIndex : walk forward test index
+	 * @param total : number of instances in the dataset
+	 *
+	 * @return : folds, one per test release
 	 * */
-	private void buildTrainingAndTestSet(List<Instances> sets, int wfIndex) {
-		Instances test = sets.get(wfIndex); //set used as test
-		test.setClassIndex(test.numAttributes() - 1);
+	private List<Fold> buildFolds(List<Instances> sets, int total) {
+		List<Fold> folds = new ArrayList<>();
+
+		SharedInstances train = null;
+		for(int wfIndex = 1; wfIndex < sets.size(); wfIndex++){ //get one set at a time to use as testing
+			if(train == null){
+				train = new SharedInstances(sets.get(0));
+			}else{
+				train = new SharedInstances(train, sets.get(wfIndex - 1)); //every release before the test one
+			}
 
-		Instances train = new Instances(sets.get(0), 0, 0);
-		for(int j = 0; j < wfIndex; j ++){
-			train.addAll(sets.get(j)); //get every fold before the test one to use as training
+			folds.add(new Fold(wfIndex, train, sets.get(wfIndex), total));
 		}
-		train.setClassIndex(train.numAttributes() - 1);
 
-		trainingSet = train;
-		testSet = test;
+		return folds;
 	}
 
 	/**
-	 * Performs a feature selection on training and test set using the model in input.
+	 * Retrieves the fold with the resampled training set.
+	 * The sampling is computed once per fold, sampling method and seed, and shared by every classifier and cost matrix.
 	 *
-	 * @param featSel : feature selection filter
+	 * @param fold : training and test set
+	 * @param sampling : sampling filter
+	 *
+	 * @return : sampled fold
 	 * */
-	protected FilteredClassifier applyFeatureSelection(ASSearch featSel, Classifier classifier) {
-		FilteredClassifier fc = new FilteredClassifier();
+	protected Fold getSampledFold(Fold fold, Filter sampling) throws Exception {
+		return fold.getDerived(getKey(sampling), () -> sampleFold(fold, Filter.makeCopy(sampling)));
+	}
 
-		AttributeSelection attSelection = new AttributeSelection();
-		CfsSubsetEval eval = new CfsSubsetEval();
+	/**
+	 * Retrieves the fold reduced to the attributes selected on its training set.
+	 * The selection is computed once per (sampled) fold and search method, and shared by every classifier and cost matrix.
+	 *
+	 * @param fold : training and test set, possibly sampled
+	 * @param featSel : search method of the feature selection
+	 *
+	 * @return : reduced fold
+	 * */
+	protected Fold getSelectedFold(Fold fold, ASSearch featSel) throws Exception {
+		return fold.getDerived(getKey(featSel), () -> selectFeatures(fold, ASSearch.makeCopies(featSel, 1)[0]));
+	}
 
-		attSelection.setEvaluator(eval);
+	/**
+	 * Applies a sampling filter to the training set of a fold.
+	 *
+	 * @param fold : training and test set
+	 * @param sampling : sampling filter
+	 *
+	 * @return : fold with the sampled training set and the same test set
+	 * */
+	protected Fold sampleFold(Fold fold, Filter sampling) throws Exception {
+		Instances trainingSet = fold.getTrainingSet();
+
+		tuneSampling(sampling, fold);
+		if(sampling instanceof IndexedSMOTE) { //synthetic instances appended to the references of the training set
+			return fold.withSets(((IndexedSMOTE) sampling).oversample(trainingSet), fold.getTestSet());
+		}
+
+		sampling.setInputFormat(trainingSet);
+
+		return fold.withSets(Filter.useFilter(trainingSet, sampling), fold.getTestSet());
+	}
+
+	/**
+	 * Performs a feature selection (CFS) on the training set and reduces training and test set to the selected attributes.
+	 *
+	 * @param fold : training and test set
+	 * @param featSel : search method
+	 *
+	 * @return : reduced fold
+	 * */
+	protected Fold selectFeatures(Fold fold, ASSearch featSel) throws Exception {
+		AttributeSelection attSelection = new AttributeSelection();
+		attSelection.setEvaluator(new CfsSubsetEval());
 		attSelection.setSearch(featSel); // Set the algorithm to use
+		attSelection.SelectAttributes(fold.getTrainingSet());
+
+		int[] selected = attSelection.selectedAttributes(); //the class attribute is included
+
+		return fold.withSets(keepAttributes(fold.getTrainingSet(), selected), keepAttributes(fold.getTestSet(), selected));
+	}
+
+	private Instances keepAttributes(Instances data, int[] attributes) throws Exception {
+		Remove remove = new Remove();
+		remove.setAttributeIndicesArray(attributes);
+		remove.setInvertSelection(true);
+		remove.setInputFormat(data);
 
-		fc.setFilter(attSelection); // Apply filter
-		fc.setClassifier(classifier);
+		Instances reduced = Filter.useFilter(data, remove);
+		reduced.setClassIndex(reduced.numAttributes() - 1);
 
-		return fc;
+		return reduced;
+	}
+
+	private String getKey(Object method) {
+		return method.getClass().getName() + " " + Utils.joinOptions(((OptionHandler) method).getOptions());
 	}
 
 	/**
-	 * Performs a sampling method on training and test set.
+	 * Sets the over-sampling size to balance the classes of the training set.
 	 *
 	 * @param sampling : sampling filter
-	 * @param classifier : classifier used
+	 * @param fold : training and test set
 	 * */
-	protected FilteredClassifier applySampling(Filter sampling, Classifier classifier) {
-		FilteredClassifier fc = new FilteredClassifier();
-
+	private void tuneSampling(Filter sampling, Fold fold) {
 		if(sampling.getClass() == Resample.class) {
-			int tot = trainingSet.numInstances();
-			double minority = countDefectiveInstances(trainingSet, tot);
+			int tot = fold.getTrainingSet().numInstances();
+			double minority = fold.getDefectiveTraining();
 			double majority = tot - minority;
 
 			if(minority != 0){
 				double sampleSizePercent = 100 * ((majority-minority)/minority);
 				((Resample)sampling).setSampleSizePercent(sampleSizePercent);
 			}
-		}
+		}else if(sampling instanceof IndexedSMOTE) {
+			int tot = fold.getTrainingSet().numInstances();
+			double minority = fold.getDefectiveTraining();
+			double majority = tot - minority;
 
-		fc.setFilter(sampling);
-		fc.setClassifier(classifier);
-		return fc;
+			if(minority != 0){
+				IndexedSMOTE smote = (IndexedSMOTE) sampling;
+				smote.setClassValue(String.valueOf(fold.getTrainingSet().classAttribute().indexOfValue("Yes") + 1)); //defective class
+				smote.setPercentage(Math.max(0, 100 * ((majority-minority)/minority))); //synthetic instances to balance the classes
+			}
+		}
 	}
 
 	/**
 	 * Instantiates a new Configuration instance to separate different types of percentages.
 	 * */
-	protected Configuration setLocalConfiguration(List<Instances> sets, Classifier classifier, ASSearch filter, Filter sampling, CostMatrix sensitivity) {
+	protected Configuration setLocalConfiguration(Fold fold, Classifier classifier, ASSearch filter, Filter sampling, CostMatrix sensitivity) {
+		return setLocalConfiguration(classifier, filter, sampling, sensitivity,
+				fold.getTrainingSet().numInstances(), fold.getDefectiveTraining(),
+				fold.getTestSet().numInstances(), fold.getDefectiveTest(), fold.getTotalInstances());
+	}
+
+	/**
+	 * Instantiates a new Configuration instance from the sizes of the training and test set, when they are not in memory.
+	 * */
+	private Configuration setLocalConfiguration(Classifier classifier, ASSearch filter, Filter sampling, CostMatrix sensitivity,
+												int totTrain, int defTrain, int totTest, int defTest, int tot) {
 		Configuration config = new Configuration(classifier, filter, sampling, sensitivity);
 
-		double trainingPerc = computeTrainingPerc(sets);
+		double trainingPerc = computeTrainingPerc(totTrain, tot);
 		config.setTrainingPercentage(trainingPerc);
 
-		Pair<Double, Double> defectivePerc = computeDefectivePerc();
+		Pair<Double, Double> defectivePerc = computeDefectivePerc(totTrain, defTrain, totTest, defTest);
 		config.setDefectiveTrainingPercentage(defectivePerc.getKey());
 		config.setDefectiveTestPercentage(defectivePerc.getValue());
 
 		return config;
 	}
 
-	private Double computeTrainingPerc(List<Instances> sets) {
-		double tot = 0;
-		for(Instances is: sets) {
-			tot += is.numInstances();
-		}
-
+	private Double computeTrainingPerc(int totTrain, double tot) {
 		if(tot == 0) {
 			return tot;
 		}
-		return (trainingSet.numInstances()/tot)*100;
+		return (totTrain/tot)*100;
 	}
 
-	private Pair<Double, Double> computeDefectivePerc() {
+	private Pair<Double, Double> computeDefectivePerc(int totTrain, int defTrain, int totTest, int defTest) {
 		double trainDefPerc;
 		double testDefPerc;
 
-		int totTrain = trainingSet.numInstances();
-		int totTest = testSet.numInstances();
-
 		if(totTrain == 0) {
 			trainDefPerc = 0;
 		}else {
-			int defTrain = countDefectiveInstances(trainingSet, totTrain);
 			trainDefPerc = ((double)defTrain/totTrain)*100;
 		}
 
-		int defTest = countDefectiveInstances(testSet, totTest);
 		testDefPerc = ((double)defTest/totTest)*100;
 
 		return new Pair<>(trainDefPerc, testDefPerc);
 	}
 
-	protected int countDefectiveInstances(Instances data, int tot) {
-		int defective = 0;
-		for(int i=0; i<tot; i++) {
-			if(data.instance(i).stringValue(data.classIndex()).equals("Yes")) {
-				defective++;
-			}
+	/**
+	 * Trains the classifier on the training set and computes the class distributions used to evaluate it on the test set.
+	 * Without sensitive learning the model does not depend on the cost matrix: its predictions on the fold are computed
+	 * once and shared by the cost-free and the threshold variant, which only changes the decision rule.
+	 *
+	 * @param classifier : classifier to train
+	 * @param sensitivity : cost matrix, null if no sensitivity is applied
+	 * @param fold : training and test set
+	 *
+	 * @return : class distributions, in test set order
+	 * */
+	protected double[][] computeDistributions(Classifier classifier, CostMatrix sensitivity, Fold fold) throws Exception {
+		Instances testSet = fold.getTestSet();
+
+		if(sensitivity != null && !isMinimizingExpectedCost(sensitivity)) { //sensitive learning: the model changes
+			return predict(applySensitivity(sensitivity, classifier), fold);
+		}
+
+		double[][] distributions = fold.getDerived("predictions " + getKey(classifier), () -> predict(classifier, fold));
+		if(sensitivity == null) {
+			return distributions;
+		}
+
+		double[][] decisions = new double[distributions.length][]; //sensitive threshold
+		for(int i=0; i<testSet.numInstances(); i++) {
+			decisions[i] = minimizeExpectedCost(sensitivity, distributions[i], testSet.instance(i));
 		}
 
-		return defective;
+		return decisions;
 	}
 
-	protected Map<String, Double> computeEvaluation(Classifier classifier, CostMatrix sensitivity) throws Exception {
+	/**
+	 * Evaluates the class distributions of a model on the test set.
+	 *
+	 * @param distributions : class distributions, in test set order
+	 * @param sensitivity : cost matrix, null if no sensitivity is applied
+	 * @param fold : training and test set
+	 *
+	 * @return : performances on the test set
+	 * */
+	protected Map<String, Double> computeEvaluation(double[][] distributions, CostMatrix sensitivity, Fold fold) throws Exception {
+		Instances trainingSet = fold.getTrainingSet();
+		Instances testSet = fold.getTestSet();
+
 		Evaluation eval;
 		if(sensitivity != null) { //sensitivity
-			classifier = applySensitivity(sensitivity, classifier);
 			eval = new Evaluation(trainingSet, sensitivity);
 		}else {
 			eval = new Evaluation(trainingSet);
 		}
 
-		classifier.buildClassifier(trainingSet); //build classifier
-
-		eval.evaluateModel(classifier, testSet); //evaluation
+		for(int i=0; i<testSet.numInstances(); i++) {
+			eval.evaluateModelOnceAndRecordPrediction(distributions[i], testSet.instance(i));
+		}
 
 		return parsePerformance(eval);
 	}
 
-	private CostSensitiveClassifier applySensitivity(CostMatrix sensitivity, Classifier classifier) throws Exception {
+	/**
+	 * Trains the classifier and computes its class distribution for every test instance.
+	 *
+	 * @param classifier : classifier to train
+	 * @param fold : training and test set
+	 *
+	 * @return : class distributions, in test set order
+	 * */
+	protected double[][] predict(Classifier classifier, Fold fold) throws Exception {
+		return computeDistributions(train(classifier, fold), fold.getTestSet());
+	}
+
+	/**
+	 * Trains the classifier on the training set, or loads the same model from the model cache.
+	 *
+	 * @param classifier : classifier to train
+	 * @param fold : training and test set
+	 *
+	 * @return : trained model
+	 * */
+	protected Classifier train(Classifier classifier, Fold fold) throws Exception {
+		if(modelCache == null) {
+			build(classifier, fold.getTrainingSet());
+			return classifier;
+		}
+
+		String fingerprint = fold.getDerived("fingerprint", () -> ModelCache.fingerprint(fold.getTrainingSet()));
+		String key = modelCache.getKey(fingerprint, classifier);
+
+		Classifier model = modelCache.load(key);
+		if(model == null) {
+			build(classifier, fold.getTrainingSet());
+			modelCache.store(key, classifier);
+			model = classifier;
+		}
+
+		return model;
+	}
+
+	/**
+	 * Builds a classifier. The ensembles built in parallel (RandomForest) get an execution slot per core left free
+	 * by the other evaluations, and give the cores back when the model is built.
+	 * The lazy classifiers (IBk) index the training set with the neighbour search that suits its size and dimensions.
+	 *
+	 * @param classifier : classifier to train, possibly cost-sensitive
+	 * @param trainingSet : training set
+	 * */
+	private void build(Classifier classifier, Instances trainingSet) throws Exception {
+		Classifier base = classifier instanceof CostSensitiveClassifier ? ((CostSensitiveClassifier) classifier).getClassifier() : classifier;
+		if(base instanceof IBk) {
+			((IBk) base).setNearestNeighbourSearchAlgorithm(NeighbourSearchSelector.select(trainingSet)); //built with the model
+		}
+
+		if(!(base instanceof ParallelIteratedSingleClassifierEnhancer)) {
+			classifier.buildClassifier(trainingSet); //build classifier
+			return;
+		}
+
+		ParallelIteratedSingleClassifierEnhancer ensemble = (ParallelIteratedSingleClassifierEnhancer) base;
+		int borrowed = CpuBudget.getInstance().borrow(ensemble.getNumIterations() - 1); //the task already holds a core
+		try {
+			ensemble.setNumExecutionSlots(1 + borrowed);
+			classifier.buildClassifier(trainingSet); //build classifier
+		} finally {
+			ensemble.setNumExecutionSlots(1);
+			CpuBudget.getInstance().release(borrowed);
+		}
+	}
+
+	/**
+	 * Computes the class distribution of a trained classifier for every test instance.
+	 * The bagged ensembles (RandomForest), cost-sensitive or not, predict the test set in batches: a batch visits the
+	 * trees one at a time. They are matched by class, since Bagging reports implementsMoreEfficientBatchPrediction()
+	 * of its base classifier, which is false for RandomTree.
+	 *
+	 * @param classifier : trained classifier
+	 * @param testSet : test set
+	 *
+	 * @return : class distributions, in test set order
+	 * */
+	protected double[][] computeDistributions(Classifier classifier, Instances testSet) throws Exception {
+		Classifier base = classifier instanceof CostSensitiveClassifier ? ((CostSensitiveClassifier) classifier).getClassifier() : classifier;
+		if(base instanceof Bagging) {
+			return computeBatchDistributions((BatchPredictor) classifier, testSet);
+		}
+
+		double[][] distributions = new double[testSet.numInstances()][];
+
+		Instance classMissing;
+		for(int i=0; i<testSet.numInstances(); i++) {
+			classMissing = (Instance) testSet.instance(i).copy(); //the shared test instance is not modified
+			classMissing.setClassMissing();
+
+			distributions[i] = classifier.distributionForInstance(classMissing);
+		}
+
+		return distributions;
+	}
+
+	private double[][] computeBatchDistributions(BatchPredictor classifier, Instances testSet) throws Exception {
+		classifier.setBatchSize(String.valueOf(batchSize)); //cost-sensitive: set on the wrapped ensemble too
+		double[][] distributions = new double[testSet.numInstances()][];
+
+		for(int from = 0; from < testSet.numInstances(); from += batchSize) {
+			int to = Math.min(from + batchSize, testSet.numInstances());
+
+			Instances batch = new Instances(testSet, to - from);
+			for(int i=from; i<to; i++) {
+				batch.add(testSet.instance(i)); //copied: the shared test instance is not modified
+				batch.lastInstance().setClassMissing();
+			}
+
+			double[][] predicted = classifier.distributionsForInstances(batch);
+			System.arraycopy(predicted, 0, distributions, from, predicted.length);
+		}
+		batchPredictions.addAndGet(testSet.numInstances());
+
+		return distributions;
+	}
+
+	/**
+	 * Applies the decision rule of the sensitive threshold: the predicted class is the one with minimum expected cost.
+	 *
+	 * @param sensitivity : cost matrix
+	 * @param distribution : class distribution of the model
+	 * @param instance : test instance
+	 *
+	 * @return : distribution with probability 1 on the predicted class
+	 * */
+	private double[] minimizeExpectedCost(CostMatrix sensitivity, double[] distribution, Instance instance) throws Exception {
+		double[] costs = sensitivity.expectedCosts(distribution, instance);
+
+		double[] decision = new double[distribution.length];
+		decision[Utils.minIndex(costs)] = 1;
+
+		return decision;
+	}
+
+	private boolean isMinimizingExpectedCost(CostMatrix sensitivity) {
+		return !sensitivity.getCell(0, 1).equals(10.0);
+	}
+
+	private CostSensitiveClassifier applySensitivity(CostMatrix sensitivity, Classifier classifier) {
 		CostSensitiveClassifier csc = new CostSensitiveClassifier();
 		csc.setClassifier(classifier);
 		csc.setCostMatrix(sensitivity);
-
-		boolean minExpCost;
-		minExpCost = sensitivity.getElement(0, 1) != 10.0;
-		csc.setMinimizeExpectedCost(minExpCost);
+		csc.setMinimizeExpectedCost(isMinimizingExpectedCost(sensitivity));
 
 		return csc;
 	}
 
+	/**
+	 * Saves the predictions of a configuration on a fold, if a prediction store is set.
+	 *
+	 * @param config : evaluated configuration
+	 * @param fold : original (not pre-processed) training and test set
+	 * @param distributions : class distributions used by the evaluation
+	 * */
+	protected void storePredictions(Configuration config, Fold fold, double[][] distributions) throws IOException {
+		if(predictionStore == null) {
+			return;
+		}
+
+		predictionStore.write(getPredictions(config, fold, distributions));
+	}
+
+	/**
+	 * Collects the predictions of a configuration on a fold.
+	 *
+	 * @param config : evaluated configuration
+	 * @param fold : original (not pre-processed) training and test set
+	 * @param distributions : class distributions used by the evaluation
+	 *
+	 * @return : actual class, effort and distribution of every test instance
+	 * */
+	protected Predictions getPredictions(Configuration config, Fold fold, double[][] distributions) {
+		Instances testSet = fold.getTestSet();
+		Attribute size = testSet.attribute("Size");
+
+		int[] actual = new int[testSet.numInstances()];
+		double[] effort = new double[testSet.numInstances()];
+		for(int i=0; i<testSet.numInstances(); i++) {
+			actual[i] = (int) testSet.instance(i).classValue();
+			effort[i] = size == null ? 1 : testSet.instance(i).value(size);
+		}
+
+		return new Predictions(testSet.relationName(), config, actual, effort, distributions);
+	}
+
 	private Map<String, Double> parsePerformance(Evaluation eval) {
 		Map<String, Double> performance = new LinkedHashMap<>();
 
@@ -455,4 +1283,4 @@ public class WekaManager {
 
 		return performance;
 	}
-}
\ No newline at end of file
+}
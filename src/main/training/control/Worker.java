@@ -0,0 +1,251 @@
+package main.training.control;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import main.training.entity.Configuration;
+import main.training.entity.Fold;
+import main.training.entity.Predictions;
+import main.utils.LoggingUtils;
+import main.utils.ModelCache;
+import weka.core.Instances;
+
+/**
+ * Worker process of the evaluation grid.
+ *
+ * The worker receives the folds and the evaluation tasks from a coordinator as serialized objects, and replies with
+ * the evaluated configurations in the order of the tasks. A fold is sent once and kept until the coordinator evicts it,
+ * when every task of the fold is done.
+ * The protocol only needs a pair of streams: a worker launched by the coordinator uses its standard input and output,
+ * a remote one can use a socket.
+ * */
+public class Worker {
+
+	private Worker() {}
+
+	/**
+	 * Training and test set of a fold, as sent to the workers.
+	 * */
+	public static class FoldSlice implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int id;
+		private final int numTrainingReleases;
+		private final Instances trainingSet;
+		private final Instances testSet;
+		private final int totalInstances;
+
+		/**
+		 * @param id : identifier of the fold in the tasks
+		 * @param fold : training and test set
+		 * */
+		public FoldSlice(int id, Fold fold) {
+			this.id = id;
+			this.numTrainingReleases = fold.getNumTrainingReleases();
+			this.trainingSet = fold.getTrainingSet();
+			this.testSet = fold.getTestSet();
+			this.totalInstances = fold.getTotalInstances();
+		}
+	}
+
+	/**
+	 * Evaluation of a configuration of the grid on a fold already sent.
+	 * */
+	public static class Assignment implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int foldId;
+		private final int configIndex;
+		private final boolean predictions;
+
+		/**
+		 * @param foldId : identifier of the fold
+		 * @param configIndex : index of the configuration in the grid
+		 * @param predictions : true if the predictions must be returned with the performances
+		 * */
+		public Assignment(int foldId, int configIndex, boolean predictions) {
+			this.foldId = foldId;
+			this.configIndex = configIndex;
+			this.predictions = predictions;
+		}
+	}
+
+	/**
+	 * Fold whose tasks are done: the worker drops it.
+	 * */
+	public static class Eviction implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int foldId;
+
+		/**
+		 * @param foldId : identifier of the fold
+		 * */
+		public Eviction(int foldId) {
+			this.foldId = foldId;
+		}
+	}
+
+	/**
+	 * Outcome of an assignment: the evaluated configuration or the error that stopped it.
+	 * */
+	public static class Result implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Configuration configuration;
+		private final Predictions predictions;
+		private final String error;
+		private final boolean retriable; //the worker ran out of resources: another process may succeed
+
+		private Result(Configuration configuration, Predictions predictions, String error, boolean retriable) {
+			this.configuration = configuration;
+			this.predictions = predictions;
+			this.error = error;
+			this.retriable = retriable;
+		}
+
+		/**
+		 * @return : configuration with the performances on the fold
+		 * */
+		public Configuration getConfiguration() throws Exception {
+			if(error != null){
+				throw new Exception("Evaluation failed on worker: " + error);
+			}
+
+			return configuration;
+		}
+
+		/**
+		 * @return : predictions on the test set, null if not requested
+		 * */
+		public Predictions getPredictions() {
+			return predictions;
+		}
+
+		/**
+		 * @return : true if the evaluation failed for the resources of the worker, not for the configuration
+		 * */
+		public boolean isRetriable() {
+			return retriable;
+		}
+	}
+
+	/**
+	 * Manager of the worker: same grid of the coordinator, predictions kept for the reply.
+	 * */
+	private static class WorkerManager extends WekaManager {
+
+		private boolean capture;
+		private Predictions captured;
+
+		private WorkerManager() {
+			super(ForkJoinPool.commonPool());
+		}
+
+		private Result evaluate(Assignment assignment, Fold fold) {
+			capture = assignment.predictions;
+			captured = null;
+
+			try {
+				CpuBudget.getInstance().acquire(); //the evaluation holds a core of the budget of the worker
+				try {
+					Configuration result = evaluateConfiguration(configurations.get(assignment.configIndex), fold);
+					return new Result(result, captured, null, false);
+				} finally {
+					CpuBudget.getInstance().release(1);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return new Result(null, null, e.toString(), false);
+			} catch (Exception e) {
+				LoggingUtils.logException(e);
+				return new Result(null, null, e.toString(), false);
+			} catch (OutOfMemoryError e) { //the models of the evaluation are unreachable now: the worker goes on
+				captured = null;
+				LoggingUtils.logString("Evaluation out of memory on worker: ", e.toString());
+				return new Result(null, null, e.toString(), true);
+			}
+		}
+
+		@Override
+		protected void storePredictions(Configuration config, Fold fold, double[][] distributions) {
+			if(capture){
+				captured = getPredictions(config, fold, distributions);
+			}
+		}
+	}
+
+	/**
+	 * Runs a worker on its standard input and output.
+	 *
+	 * @param args : optional directory and size in bytes of the model cache
+	 * */
+	public static void main(String[] args) {
+		OutputStream protocol = new FileOutputStream(FileDescriptor.out);
+		System.setOut(System.err); //the standard output is reserved to the protocol
+
+		LoggingUtils.setLogger(Logger.getLogger("worker"));
+
+		try {
+			ModelCache cache = null;
+			if(args.length == 2){
+				cache = new ModelCache(args[0], Long.parseLong(args[1]));
+			}
+
+			serve(new BufferedInputStream(System.in), new BufferedOutputStream(protocol), cache);
+		} catch (Exception e) {
+			LoggingUtils.logException(e);
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Evaluates the tasks received on a stream until the coordinator closes it.
+	 *
+	 * @param input : stream of the coordinator messages
+	 * @param output : stream of the replies
+	 * @param cache : cache of trained models, null to train every model
+	 * */
+	public static void serve(InputStream input, OutputStream output, ModelCache cache) throws IOException, ClassNotFoundException {
+		WorkerManager manager = new WorkerManager();
+		manager.setModelCache(cache);
+
+		Map<Integer, Fold> folds = new HashMap<>();
+
+		ObjectOutputStream out = new ObjectOutputStream(output);
+		out.flush(); //header first: the coordinator waits for it
+		ObjectInputStream in = new ObjectInputStream(input);
+
+		while(true){
+			Object message;
+			try {
+				message = in.readObject();
+			} catch (EOFException e) {
+				return; //closed by the coordinator
+			}
+
+			if(message instanceof FoldSlice){
+				FoldSlice slice = (FoldSlice) message;
+				folds.put(slice.id, new Fold(slice.numTrainingReleases, slice.trainingSet, slice.testSet, slice.totalInstances));
+				continue;
+			}
+
+			if(message instanceof Eviction){ //the coordinator also resets its stream: the fold is not referenced anymore
+				folds.remove(((Eviction) message).foldId);
+				continue;
+			}
+
+			Assignment assignment = (Assignment) message;
+			out.writeObject(manager.evaluate(assignment, folds.get(assignment.foldId)));
+			out.flush();
+			out.reset(); //replies are not referenced again
+		}
+	}
+}
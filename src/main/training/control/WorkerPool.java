@@ -0,0 +1,322 @@
+package main.training.control;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import main.training.entity.Fold;
+import main.utils.LoggingUtils;
+
+/**
+ * Coordinator of the worker processes launched on this machine.
+ *
+ * Every worker is a separate JVM with its own heap, so the memory of the large models and of the pre-processed folds
+ * is split across processes. A task is assigned to an idle worker, preferring one that already received its fold;
+ * the fold is sent to a worker only once, and evicted from every worker when all its expected tasks are done.
+ * A task whose worker terminates or runs out of memory is assigned to another worker.
+ * */
+public class WorkerPool implements Closeable {
+
+	private static final long SHUTDOWN_TIMEOUT = 10; //seconds
+
+	private final List<Connection> connections = new ArrayList<>();
+	private final Deque<Connection> idle = new ArrayDeque<>();
+	private final Map<Fold, Integer> foldIds = new IdentityHashMap<>();
+	private final Map<Integer, Integer> pendingTasks = new HashMap<>(); //fold id -> tasks not done yet
+	private int nextFoldId;
+
+	/**
+	 * Worker process and its streams.
+	 * */
+	private static class Connection {
+
+		private final Process process;
+		private final ObjectOutputStream out;
+		private final ObjectInputStream in;
+		//guarded by the pool lock: updated by the tasks of other workers
+		private final Set<Integer> folds = new HashSet<>(); //folds already sent
+		private final List<Integer> evicted = new ArrayList<>(); //folds done while the worker was busy
+
+		private Connection(Process process) throws IOException {
+			this.process = process;
+			this.out = new ObjectOutputStream(new BufferedOutputStream(process.getOutputStream()));
+			this.out.flush(); //header first: the worker waits for it
+			this.in = new ObjectInputStream(new BufferedInputStream(process.getInputStream()));
+		}
+
+		/**
+		 * Sends a task to the worker and waits for its outcome. Only the thread holding the worker calls it.
+		 *
+		 * @param evictions : folds to drop first, taken under the pool lock
+		 * @param sendFold : true if the worker has not received the fold yet
+		 * */
+		private Worker.Result evaluate(int foldId, Fold fold, int configIndex, boolean predictions, List<Integer> evictions,
+									   boolean sendFold) throws IOException, ClassNotFoundException {
+			evict(evictions);
+
+			if(sendFold){
+				out.writeObject(new Worker.FoldSlice(foldId, fold)); //instances already sent by another fold are referenced
+			}
+
+			out.writeObject(new Worker.Assignment(foldId, configIndex, predictions));
+			out.flush();
+
+			return (Worker.Result) in.readObject();
+		}
+
+		/**
+		 * Drops the evicted folds from the worker and from the handle table of the stream, on both sides.
+		 * */
+		private void evict(List<Integer> evictions) throws IOException {
+			if(evictions.isEmpty()){
+				return;
+			}
+
+			for(int foldId: evictions){
+				out.writeObject(new Worker.Eviction(foldId));
+			}
+			out.reset(); //the folds still kept by the worker are referenced by identifier only
+			out.flush();
+		}
+
+		/**
+		 * @return : folds evicted since the last task, called under the pool lock
+		 * */
+		private List<Integer> takeEvicted() {
+			List<Integer> evictions = new ArrayList<>(evicted);
+			evicted.clear();
+
+			return evictions;
+		}
+
+		private void close() throws InterruptedException {
+			try {
+				out.close(); //end of the tasks
+			} catch (IOException e) {
+				//worker already terminated
+			}
+
+			if(!process.waitFor(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)){
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	/**
+	 * Launches the worker processes.
+	 *
+	 * @param processes : number of workers
+	 * @param heap : maximum heap of each worker (e.g. 2g), empty for the JVM default
+	 * @param modelCache : directory of the model cache shared by the workers, null to train every model
+	 * @param modelCacheSize : maximum size of the model cache in bytes
+	 * */
+	public WorkerPool(int processes, String heap, String modelCache, long modelCacheSize) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		if(!heap.isEmpty()){
+			command.add("-Xmx" + heap);
+		}
+		command.add("-Dcpu_budget=" + Math.max(1, CpuBudget.getInstance().size()/processes)); //the cores are split among the workers
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Worker.class.getName());
+		if(modelCache != null){
+			command.add(modelCache);
+			command.add(String.valueOf(modelCacheSize));
+		}
+
+		try {
+			for(int i=0; i<processes; i++){
+				Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+				Connection connection;
+				try {
+					connection = new Connection(process);
+				} catch (IOException e) {
+					process.destroyForcibly();
+					throw e;
+				}
+				connections.add(connection);
+				idle.add(connection);
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+
+		LoggingUtils.logInt("Worker processes started: ", processes);
+	}
+
+	/**
+	 * Sets the number of tasks of a fold: the fold is evicted from the workers when they are done.
+	 * A fold without expected tasks is kept until the pool is closed.
+	 *
+	 * @param fold : training and test set
+	 * @param tasks : number of evaluations of the fold
+	 * */
+	public synchronized void expect(Fold fold, int tasks) {
+		pendingTasks.merge(getFoldId(fold), tasks, Integer::sum);
+	}
+
+	/**
+	 * Evaluates a configuration on a fold in an idle worker, waiting for one if they are all busy.
+	 * If the worker terminates or runs out of memory, the evaluation is assigned to a worker not tried yet.
+	 *
+	 * @param configIndex : index of the configuration in the grid
+	 * @param fold : training and test set
+	 * @param predictions : true if the predictions must be returned with the performances
+	 *
+	 * @return : outcome of the evaluation
+	 *
+	 * @throws IOException : if the evaluation failed on every worker, so it can run in another process
+	 * */
+	public Worker.Result evaluate(int configIndex, Fold fold, boolean predictions) throws IOException, InterruptedException {
+		int foldId;
+		synchronized (this) {
+			foldId = getFoldId(fold);
+		}
+
+		try {
+			Set<Connection> tried = new HashSet<>();
+			Connection connection;
+			while((connection = acquire(foldId, tried)) != null){
+				tried.add(connection);
+
+				List<Integer> evictions;
+				boolean sendFold;
+				synchronized (this) { //the fold sets and the evictions are updated by the tasks of other workers
+					evictions = connection.takeEvicted();
+					sendFold = connection.folds.add(foldId);
+				}
+
+				boolean healthy = false;
+				Worker.Result result = null;
+				try {
+					result = connection.evaluate(foldId, fold, configIndex, predictions, evictions, sendFold);
+					healthy = true;
+				} catch (IOException | ClassNotFoundException e) {
+					LoggingUtils.logException(e);
+				} finally {
+					release(connection, healthy);
+				}
+
+				if(result != null && !result.isRetriable()){
+					return result;
+				}
+			}
+
+			throw new IOException("Evaluation failed on every worker process.");
+		} finally {
+			done(foldId);
+		}
+	}
+
+	private int getFoldId(Fold fold) {
+		return foldIds.computeIfAbsent(fold, k -> nextFoldId++);
+	}
+
+	/**
+	 * @return : idle worker not tried yet, preferring one with the fold, or null if every remaining worker was tried
+	 * */
+	private synchronized Connection acquire(int foldId, Set<Connection> tried) throws InterruptedException {
+		while(true){
+			Connection candidate = null;
+			for(Connection connection: idle){
+				if(tried.contains(connection)){
+					continue;
+				}
+				if(connection.folds.contains(foldId)){ //no transfer of the fold
+					candidate = connection;
+					break;
+				}
+				if(candidate == null){
+					candidate = connection;
+				}
+			}
+
+			if(candidate != null){
+				idle.remove(candidate);
+				return candidate;
+			}
+
+			if(tried.containsAll(connections)){
+				return null;
+			}
+			wait();
+		}
+	}
+
+	private synchronized void release(Connection connection, boolean healthy) {
+		if(healthy){
+			idle.add(connection);
+		}else{ //terminated or out of sync: not used anymore
+			connections.remove(connection);
+			connection.process.destroyForcibly();
+			LoggingUtils.logInt("Worker process lost, remaining: ", connections.size());
+		}
+
+		notifyAll();
+	}
+
+	/**
+	 * Counts a task of a fold as done, evicting the fold after the last one: the idle workers drop it now, the busy
+	 * ones before their next task.
+	 * */
+	private synchronized void done(int foldId) {
+		Integer pending = pendingTasks.get(foldId);
+		if(pending == null){
+			return;
+		}
+		if(pending > 1){
+			pendingTasks.put(foldId, pending - 1);
+			return;
+		}
+
+		pendingTasks.remove(foldId);
+		foldIds.values().remove(foldId);
+
+		for(Connection connection: connections){
+			if(connection.folds.remove(foldId)){
+				connection.evicted.add(foldId);
+			}
+		}
+
+		Iterator<Connection> it = idle.iterator();
+		while(it.hasNext()){
+			Connection connection = it.next();
+			try {
+				connection.evict(connection.takeEvicted()); //idle: no task is writing on its stream
+			} catch (IOException e) { //lost: not used anymore
+				LoggingUtils.logException(e);
+				it.remove();
+				connections.remove(connection);
+				connection.process.destroyForcibly();
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return : number of worker processes still running
+	 * */
+	public synchronized int size() {
+		return connections.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			for(Connection connection: connections){
+				connection.close();
+			}
+		} catch (InterruptedException e) {
+			for(Connection connection: connections){
+				connection.process.destroyForcibly();
+			}
+			Thread.currentThread().interrupt();
+		}
+
+		connections.clear();
+		idle.clear();
+	}
+}
@@ -5,11 +5,15 @@ import weka.classifiers.Classifier;
 import weka.classifiers.CostMatrix;
 import weka.filters.Filter;
 import weka.filters.supervised.instance.Resample;
+import weka.filters.supervised.instance.SMOTE;
 
+import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
-public class Configuration {
+public class Configuration implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final Classifier classifier;
     private final String classifierName;
@@ -42,6 +46,8 @@ public class Configuration {
         if(sampling != null){
             if(sampling.getClass().equals(Resample.class))
                 this.samplingMethod = "Over-sampling";
+            else if(sampling instanceof SMOTE)
+                this.samplingMethod = "SMOTE";
             else{
                 this.samplingMethod = "Under-sampling";
             }
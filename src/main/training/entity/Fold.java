@@ -0,0 +1,119 @@
+package main.training.entity;
+
+import weka.core.Instances;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Training and test set of a walk-forward iteration.
+ *
+ * A fold is shared by every configuration evaluated on it and must be used read-only.
+ * */
+public class Fold {
+
+    private final int numTrainingReleases;
+    private final Instances trainingSet;
+    private final Instances testSet;
+    private final int totalInstances; //instances of the whole dataset, used for the training percentage
+
+    private final Map<String, FutureTask<Object>> derived = new ConcurrentHashMap<>(); //results computed on the fold
+
+    private int[] defective; //defective instances of training and test set, counted once
+
+    public Fold(int numTrainingReleases, Instances trainingSet, Instances testSet, int totalInstances) {
+        this.numTrainingReleases = numTrainingReleases;
+        this.trainingSet = trainingSet;
+        this.testSet = testSet;
+        this.totalInstances = totalInstances;
+    }
+
+    public int getNumTrainingReleases() {
+        return numTrainingReleases;
+    }
+
+    public Instances getTrainingSet() {
+        return trainingSet;
+    }
+
+    public Instances getTestSet() {
+        return testSet;
+    }
+
+    public int getTotalInstances() {
+        return totalInstances;
+    }
+
+    public int getDefectiveTraining() {
+        return getDefective()[0];
+    }
+
+    public int getDefectiveTest() {
+        return getDefective()[1];
+    }
+
+    private synchronized int[] getDefective() {
+        if(defective == null){
+            defective = new int[]{countDefective(trainingSet), countDefective(testSet)};
+        }
+
+        return defective;
+    }
+
+    private static int countDefective(Instances data) {
+        int yes = data.classAttribute().indexOfValue("Yes");
+
+        int count = 0;
+        for(int i=0; i<data.numInstances(); i++) {
+            if((int) data.instance(i).classValue() == yes) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Retrieves a result computed on this fold, e.g. a pre-processed fold or the predictions of a model.
+     * The result is computed only by the first caller: concurrent callers with the same key wait for it and share it.
+     *
+     * @param key : identifier of the result, including its type
+     * @param builder : computes the result
+     *
+     * @return : derived result
+     * */
+    @SuppressWarnings("unchecked")
+    public <T> T getDerived(String key, Callable<T> builder) throws Exception {
+        FutureTask<Object> task = new FutureTask<>((Callable<Object>) builder);
+
+        FutureTask<Object> existing = derived.putIfAbsent(key, task);
+        if(existing == null){
+            existing = task;
+            task.run();
+        }
+
+        try {
+            return (T) existing.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof Exception){
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a fold of the same walk-forward iteration with pre-processed sets.
+     *
+     * @param training : pre-processed training set
+     * @param test : pre-processed test set
+     *
+     * @return : new fold
+     * */
+    public Fold withSets(Instances training, Instances test) {
+        return new Fold(numTrainingReleases, training, test, totalInstances);
+    }
+}
@@ -0,0 +1,97 @@
+package main.training.entity;
+
+import java.io.Serializable;
+
+/**
+ * Predictions of a configuration on the test set of a walk-forward fold.
+ *
+ * For every test instance the store keeps the actual class, the effort to inspect it (its size)
+ * and the class distribution used by the evaluation.
+ * */
+public class Predictions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String dataset;
+    private final String classifier;
+    private final String balancing;
+    private final String featureSelection;
+    private final String sensitivity;
+    private final int numTrainingReleases;
+
+    private final int[] actual;
+    private final double[] effort;
+    private final double[][] distributions;
+
+    public Predictions(String dataset, String classifier, String balancing, String featureSelection, String sensitivity,
+                       int numTrainingReleases, int[] actual, double[] effort, double[][] distributions) {
+        this.dataset = dataset;
+        this.classifier = classifier;
+        this.balancing = balancing;
+        this.featureSelection = featureSelection;
+        this.sensitivity = sensitivity;
+        this.numTrainingReleases = numTrainingReleases;
+        this.actual = actual;
+        this.effort = effort;
+        this.distributions = distributions;
+    }
+
+    /**
+     * Creates the predictions of a configuration evaluated on a fold.
+     *
+     * @param dataset : name of the dataset
+     * @param config : evaluated configuration
+     * @param actual : actual class of the test instances
+     * @param effort : effort of the test instances
+     * @param distributions : class distributions of the test instances
+     * */
+    public Predictions(String dataset, Configuration config, int[] actual, double[] effort, double[][] distributions) {
+        this(dataset, config.getClassifierName(),
+                config.getSampling() == null ? "/" : config.getSamplingMethod(),
+                config.getFeatSelection() == null ? "/" : config.getFeatSelectionMethod(),
+                config.getSensitivity() == null ? "/" : config.getSensitivityMethod(),
+                config.getNumTrainingReleases(), actual, effort, distributions);
+    }
+
+    public int size() {
+        return actual.length;
+    }
+
+    //----------------------------------------------------Getters-------------------------------------------------------
+
+    public String getDataset() {
+        return dataset;
+    }
+
+    public String getClassifier() {
+        return classifier;
+    }
+
+    public String getBalancing() {
+        return balancing;
+    }
+
+    public String getFeatureSelection() {
+        return featureSelection;
+    }
+
+    public String getSensitivity() {
+        return sensitivity;
+    }
+
+    public int getNumTrainingReleases() {
+        return numTrainingReleases;
+    }
+
+    public int[] getActual() {
+        return actual;
+    }
+
+    public double[] getEffort() {
+        return effort;
+    }
+
+    public double[][] getDistributions() {
+        return distributions;
+    }
+}
@@ -0,0 +1,61 @@
+package main.training.entity;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.List;
+
+/**
+ * Append-only training set of a walk-forward fold.
+ *
+ * The set does not copy the instances of the releases: it holds references to the instances of the
+ * release sets, and a new fold extends the references of the previous one with the instances of a single release.
+ * The referenced instances are shared by every fold and configuration, so the set must be used read-only.
+ * */
+public class SharedInstances extends Instances {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the training set made of the first release.
+     *
+     * @param release : instances of the release
+     * */
+    public SharedInstances(Instances release) {
+        super(release, release.numInstances());
+        addReferences(release);
+        setClassIndex(release.classIndex());
+    }
+
+    /**
+     * Creates the training set made of the releases of a previous training set plus a new release.
+     *
+     * @param previous : training set of the previous fold
+     * @param release : instances of the new release
+     * */
+    public SharedInstances(SharedInstances previous, Instances release) {
+        super(previous, previous.numInstances() + release.numInstances());
+        m_Instances.addAll(previous.m_Instances);
+        addReferences(release);
+        setClassIndex(previous.classIndex());
+    }
+
+    /**
+     * Creates a training set made of the instances of a set plus new instances, e.g. synthetic ones.
+     *
+     * @param base : instances of the set
+     * @param additions : new instances, with the dataset of the set
+     * */
+    public SharedInstances(Instances base, List<Instance> additions) {
+        super(base, base.numInstances() + additions.size());
+        addReferences(base);
+        m_Instances.addAll(additions);
+        setClassIndex(base.classIndex());
+    }
+
+    private void addReferences(Instances release) {
+        for(int i=0; i<release.numInstances(); i++){
+            m_Instances.add(release.instance(i));
+        }
+    }
+}
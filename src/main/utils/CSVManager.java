@@ -2,23 +2,22 @@ package main.utils;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 
 import main.dataset.entity.FileMetadata;
 import main.training.entity.Configuration;
+import main.training.entity.Predictions;
 
 public class CSVManager {
 
-	//Instantiation
-	private static CSVManager instance = null;
+	//Instantiation: eager, the instance is shared by concurrent runs
+	private static final CSVManager instance = new CSVManager();
 
     private CSVManager() { /**/ }
 
     public static CSVManager getInstance() {
-        if(instance == null) {
-        	instance = new CSVManager();
-        }
         return instance;
     }
 
@@ -100,44 +99,131 @@ public class CSVManager {
     	
     	String path = outputPath + project + "_Weka.csv";
     	try(FileWriter fw = new FileWriter(path)){
-    		fw.append("Dataset,"
-					+ "#Training Releases,%Training,%DefectiveTraining,%DefectiveTesting,"
-    				+ "Classifier,Balancing,FeatureSelection,Sensitivity,"
-    				+ "TP,FP,TN,FN,Precision,Recall,AUC,Kappa");
-    		fw.append("\n");
+    		appendWekaHeader(fw);
 
 			for(Configuration config: configurations){
+				appendWekaRow(fw, project, config);
+			}
+    	}
 
-				fw.append(project).append(",");	//Dataset
-				fw.append(String.valueOf(config.getNumTrainingReleases())).append(",");	//#Training Releases
+	}
+
+	/**
+	 * Creates the csv file of the configurations pruned by racing.
+	 *
+	 * @param outputPath : directory of output files
+	 * @param project : name of the dataset
+	 * @param pruned : pruned configurations, with the number of training releases of their last evaluated fold
+	 * */
+	public void getRacingReport(String outputPath, String project, Map<Configuration, Integer> pruned) throws IOException {
 
-				fw.append(String.valueOf(config.getTrainingPercentage())).append(","); 			//%Training
-				fw.append(String.valueOf(config.getDefectiveTrainingPercentage())).append(",");	// %DefectiveTraining
-				fw.append(String.valueOf(config.getDefectiveTestPercentage())).append(",");		//%DefectiveTesting
+		String path = outputPath + project + "_Racing.csv";
+		try(FileWriter fw = new FileWriter(path)){
+			fw.append("Dataset,Classifier,Balancing,FeatureSelection,Sensitivity,PrunedAfter#TrainingReleases");
+			fw.append("\n");
+
+			for(Map.Entry<Configuration, Integer> entry: pruned.entrySet()){
+				fw.append(project).append(",");	//Dataset
 
 				//ML model settings
-				appendModelSettings(fw, config);
-
-				//Performances
-				fw.append(String.valueOf(config.getPerformances().get("TP"))).append(",");			//TP
-				fw.append(String.valueOf(config.getPerformances().get("FP"))).append(",");			//FP
-				fw.append(String.valueOf(config.getPerformances().get("TN"))).append(",");			//TN
-				fw.append(String.valueOf(config.getPerformances().get("FN"))).append(",");			//FN
-				fw.append(String.valueOf(config.getPerformances().get("Precision"))).append(",");	//Precision
-				fw.append(String.valueOf(config.getPerformances().get("Recall"))).append(",");		//Recall
-				fw.append(String.valueOf(config.getPerformances().get("AUC"))).append(",");			//AUC
-				fw.append(String.valueOf(config.getPerformances().get("Kappa"))).append(",");		//Kappa
+				appendModelSettings(fw, entry.getKey());
 
+				fw.append(String.valueOf(entry.getValue()));	//PrunedAfter#TrainingReleases
 				fw.append("\n");
 			}
-    	}
+		}
+	}
+
+	/**
+	 * Writes the header of the Weka results.
+	 * */
+	public void appendWekaHeader(Writer fw) throws IOException {
+		fw.append("Dataset,"
+				+ "#Training Releases,%Training,%DefectiveTraining,%DefectiveTesting,"
+				+ "Classifier,Balancing,FeatureSelection,Sensitivity,"
+				+ "TP,FP,TN,FN,Precision,Recall,AUC,Kappa");
+		fw.append("\n");
+	}
 
+	/**
+	 * Writes the Weka result of a configuration on a fold.
+	 *
+	 * @param fw : output writer
+	 * @param project : name of the dataset
+	 * @param config : evaluated configuration
+	 * */
+	public void appendWekaRow(Writer fw, String project, Configuration config) throws IOException {
+		fw.append(project).append(",");	//Dataset
+		fw.append(String.valueOf(config.getNumTrainingReleases())).append(",");	//#Training Releases
+
+		fw.append(String.valueOf(config.getTrainingPercentage())).append(","); 			//%Training
+		fw.append(String.valueOf(config.getDefectiveTrainingPercentage())).append(",");	// %DefectiveTraining
+		fw.append(String.valueOf(config.getDefectiveTestPercentage())).append(",");		//%DefectiveTesting
+
+		//ML model settings
+		appendModelSettings(fw, config);
+
+		//Performances
+		fw.append(String.valueOf(config.getPerformances().get("TP"))).append(",");			//TP
+		fw.append(String.valueOf(config.getPerformances().get("FP"))).append(",");			//FP
+		fw.append(String.valueOf(config.getPerformances().get("TN"))).append(",");			//TN
+		fw.append(String.valueOf(config.getPerformances().get("FN"))).append(",");			//FN
+		fw.append(String.valueOf(config.getPerformances().get("Precision"))).append(",");	//Precision
+		fw.append(String.valueOf(config.getPerformances().get("Recall"))).append(",");		//Recall
+		fw.append(String.valueOf(config.getPerformances().get("AUC"))).append(",");			//AUC
+		fw.append(String.valueOf(config.getPerformances().get("Kappa"))).append(",");		//Kappa
+
+		fw.append("\n");
+	}
+
+	/**
+	 * Creates the csv file of the metrics computed from a prediction store.
+	 *
+	 * @param path : path of the output file
+	 * @param predictions : stored predictions, one per configuration and fold
+	 * @param metrics : metrics of each predictions
+	 * @param intervals : bootstrap confidence interval of each metric
+	 * */
+	public void getMetricsResult(String path, List<Predictions> predictions, List<Map<String, Double>> metrics,
+								 List<Map<String, double[]>> intervals) throws IOException {
+
+		try(FileWriter fw = new FileWriter(path)){
+			fw.append("Dataset,#Training Releases,Classifier,Balancing,FeatureSelection,Sensitivity");
+			if(!metrics.isEmpty()){
+				for(String metric: metrics.get(0).keySet()){
+					fw.append(",").append(metric).append(",").append(metric).append("_Low,").append(metric).append("_High");
+				}
+			}
+			fw.append("\n");
+
+			for(int i=0; i<predictions.size(); i++){
+				Predictions record = predictions.get(i);
+
+				fw.append(record.getDataset()).append(",");										//Dataset
+				fw.append(String.valueOf(record.getNumTrainingReleases())).append(",");			//#Training Releases
+				fw.append(record.getClassifier()).append(",");									//Classifier
+				fw.append(record.getBalancing()).append(",");									//Balancing
+				fw.append(record.getFeatureSelection()).append(",");							//FeatureSelection
+				fw.append(record.getSensitivity());												//Sensitivity
+
+				//Metrics and confidence intervals
+				for(Map.Entry<String, Double> metric: metrics.get(i).entrySet()){
+					double[] interval = intervals.get(i).get(metric.getKey());
+
+					fw.append(",").append(String.valueOf(metric.getValue()));
+					fw.append(",").append(String.valueOf(interval[0]));
+					fw.append(",").append(String.valueOf(interval[1]));
+				}
+
+				fw.append("\n");
+			}
+		}
 	}
 
 	/**
 	 * Writes in the output file the configuration related to the performances.
 	 * */
-	private void appendModelSettings(FileWriter fw, Configuration config) throws IOException {
+	private void appendModelSettings(Writer fw, Configuration config) throws IOException {
 		fw.append(config.getClassifierName()).append(",");//Classifier
 
 		//Balancing
@@ -0,0 +1,150 @@
+package main.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import main.dataset.entity.FileMetadata;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Builds the Weka datasets in memory, directly from the files mined per release.
+ *
+ * The header is the same of the csv dataset without the identification columns (project, version, filename).
+ * */
+public class InstancesManager {
+
+	private static final String[] FEATURES = {"Size", "LOC_touched", "NR", "NFix", "NAuth",
+											  "LOC_added", "MAX_LOC_added", "AVG_LOC_added",
+											  "Churn", "MAX_Churn", "AVG_Churn",
+											  "ChgSetSize", "MAX_ChgSet", "AVG_ChgSet",
+											  "Age"};
+
+	//Instantiation: eager, the instance is shared by concurrent runs
+	private static final InstancesManager instance = new InstancesManager();
+
+	private InstancesManager() { /**/ }
+
+	public static InstancesManager getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Creates the dataset of every release in a single set of instances.
+	 *
+	 * @param datasetName: name of the dataset
+	 * @param files: lists of FileMetadata per release
+	 *
+	 * @return : instances with class index set
+	 * */
+	public Instances getDataset(String datasetName, Map<String, List<FileMetadata>> files) {
+		Instances data = createHeader(datasetName);
+
+		for(Map.Entry<String, List<FileMetadata>> entry: files.entrySet()){
+			addInstances(data, entry.getKey(), entry.getValue());
+		}
+
+		return data;
+	}
+
+	/**
+	 * Creates a set of instances per release, in release order.
+	 *
+	 * @param datasetName: name of the dataset
+	 * @param files: lists of FileMetadata per release
+	 *
+	 * @return : instances per release with class index set
+	 * */
+	public List<Instances> getDatasetPerRelease(String datasetName, Map<String, List<FileMetadata>> files) {
+		List<Instances> sets = new ArrayList<>();
+
+		Instances data;
+		for(Map.Entry<String, List<FileMetadata>> entry: files.entrySet()){
+			data = createHeader(datasetName);
+			addInstances(data, entry.getKey(), entry.getValue());
+
+			sets.add(data);
+		}
+
+		return sets;
+	}
+
+	/**
+	 * Writes the dataset of every release on a release store, one release at a time, without keeping them in memory.
+	 *
+	 * @param datasetName: name of the dataset
+	 * @param files: lists of FileMetadata per release
+	 * @param store: store of the releases, empty
+	 * */
+	public void writeDatasetPerRelease(String datasetName, Map<String, List<FileMetadata>> files, ReleaseStore store) throws IOException {
+		for(Map.Entry<String, List<FileMetadata>> entry: files.entrySet()){
+			Instances data = createHeader(datasetName);
+			addInstances(data, entry.getKey(), entry.getValue());
+
+			store.write(data);
+		}
+	}
+
+	/**
+	 * Creates the empty dataset with the fixed header: numeric features and nominal class.
+	 *
+	 * @param datasetName: name of the dataset
+	 *
+	 * @return : empty instances with class index set
+	 * */
+	public Instances createHeader(String datasetName) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for(String feature: FEATURES){
+			attributes.add(new Attribute(feature));
+		}
+		attributes.add(new Attribute("Buggy", Arrays.asList("No", "Yes"))); //Some sets may not have positive instances
+
+		Instances data = new Instances(datasetName, attributes, 0);
+		data.setClassIndex(data.numAttributes() - 1);
+
+		return data;
+	}
+
+	/**
+	 * Computes the values of a file in a release, following the header order.
+	 *
+	 * @param file: file to describe
+	 * @param rel: release of the file
+	 *
+	 * @return : feature values followed by the class value
+	 * */
+	public double[] getValues(FileMetadata file, String rel) {
+		return new double[]{
+				file.getSize(),								//Size
+				file.getLOCTouchedOverRevision(rel),		//LOC_touched
+				file.getNumberOfRevisionsPerRelease(rel),	//NR
+				file.getFixCounter(),						//NFix
+				file.getNumberOfAuthors(),					//NAuth
+				file.getLOCAddedOverRevision(rel),			//LOC_added
+				file.getMaxLOCAddedPerRelease(rel),			//MAX_LOC_added
+				file.getAvgLOCAddedPerRelease(rel),			//AVG_LOC_added
+				file.getChurnOverRevision(rel),				//Churn
+				file.getMaxChurnPerRelease(rel),			//MAX_Churn
+				file.getAvgChurnPerRelease(rel),			//AVG_Churn
+				file.getChgSetSizeOverRevisions(rel),		//ChgSetSize
+				file.getMaxChgSetSizePerRelease(rel),		//MAX_ChgSet
+				file.getAvgChgSetSizePerRelease(rel),		//AVG_ChgSet
+				file.getAge(),								//Age
+				file.getBuggynessSet().contains(rel) ? 1 : 0	//Buggy
+		};
+	}
+
+	private void addInstances(Instances data, String rel, List<FileMetadata> files) {
+		for(FileMetadata file: files){
+			if(file.getSize() < 0) { //same filter of the csv dataset
+				continue;
+			}
+
+			data.add(new DenseInstance(1.0, getValues(file, rel)));
+		}
+	}
+}
@@ -15,13 +15,10 @@ import org.json.JSONObject;
  * */
 public class JSONManager {
 
-	//Instantiation
-	private static JSONManager instance = null;
+	//Instantiation: eager, the instance is shared by concurrent runs
+	private static final JSONManager instance = new JSONManager();
     private JSONManager() {/**/}
     public static JSONManager getInstance() {
-        if(instance == null) {
-        	instance = new JSONManager();
-        }
         return instance;
     }
 	
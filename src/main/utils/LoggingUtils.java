@@ -28,6 +28,11 @@ public class LoggingUtils {
         logger.info(log);
     }
 
+    public static void logString(String msg, String arg){
+        String log = msg + arg;
+        logger.info(log);
+    }
+
     public static void logInt(String msg, int arg){
         String log = msg + arg;
         logger.info(log);
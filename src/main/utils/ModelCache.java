@@ -0,0 +1,179 @@
+package main.utils;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.OptionHandler;
+import weka.core.SerializationHelper;
+import weka.core.Utils;
+
+/**
+ * Local cache of trained models, serialized on disk.
+ *
+ * A model is identified by the fingerprint of its training set and by the class and options of the classifier,
+ * so a rerun on the same data skips the training of unchanged configurations.
+ * When the cache exceeds its size, the least recently used models are deleted.
+ * */
+public class ModelCache {
+
+	private static final String EXTENSION = ".model";
+
+	private final File directory;
+	private final long maxSize; //bytes
+
+	/**
+	 * @param directory : directory of the cached models
+	 * @param maxSize : maximum size of the cache in bytes
+	 * */
+	public ModelCache(String directory, long maxSize) throws IOException {
+		this.directory = new File(directory);
+		this.maxSize = maxSize;
+
+		if(!this.directory.isDirectory() && !this.directory.mkdirs()){
+			throw new IOException("Cannot create the model cache: " + directory);
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of a training set: header, values and weights of every instance.
+	 *
+	 * @param data : training set
+	 *
+	 * @return : hex digest of the instances
+	 * */
+	public static String fingerprint(Instances data) throws IOException {
+		MessageDigest digest = getDigest();
+
+		digest.update(data.stringFreeStructure().toString().getBytes(StandardCharsets.UTF_8));
+
+		ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES*(data.numAttributes() + 1));
+		for(Instance instance: data){
+			buffer.clear();
+			buffer.putDouble(instance.weight());
+			for(double value: instance.toDoubleArray()){
+				buffer.putDouble(value);
+			}
+
+			digest.update(buffer.array(), 0, buffer.position());
+		}
+
+		return new BigInteger(1, digest.digest()).toString(16);
+	}
+
+	/**
+	 * Computes the key of a model.
+	 *
+	 * @param fingerprint : fingerprint of the training set
+	 * @param classifier : untrained classifier
+	 *
+	 * @return : hex digest of training set and configuration
+	 * */
+	public String getKey(String fingerprint, Classifier classifier) throws IOException {
+		MessageDigest digest = getDigest();
+
+		digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+		digest.update(classifier.getClass().getName().getBytes(StandardCharsets.UTF_8));
+		if(classifier instanceof OptionHandler){
+			digest.update(Utils.joinOptions(((OptionHandler) classifier).getOptions()).getBytes(StandardCharsets.UTF_8));
+		}
+
+		return new BigInteger(1, digest.digest()).toString(16);
+	}
+
+	/**
+	 * Loads a cached model.
+	 *
+	 * @param key : key of the model
+	 *
+	 * @return : the trained model, null if it is not cached
+	 * */
+	public Classifier load(String key) {
+		File file = new File(directory, key + EXTENSION);
+		if(!file.isFile()){
+			return null;
+		}
+
+		try(InputStream in = new BufferedInputStream(new FileInputStream(file))){
+			Classifier model = (Classifier) SerializationHelper.read(in);
+
+			if(!file.setLastModified(System.currentTimeMillis())){ //recently used
+				LoggingUtils.logString("Cannot update the model cache entry: ", file.getName());
+			}
+			return model;
+
+		} catch (Exception e) { //corrupted or incompatible entry: trained again
+			LoggingUtils.logString("Invalid model cache entry: ", file.getName());
+			return null;
+		}
+	}
+
+	/**
+	 * Saves a trained model and evicts the least recently used ones if the cache is too large.
+	 *
+	 * @param key : key of the model
+	 * @param model : trained model
+	 * */
+	public void store(String key, Classifier model) throws Exception {
+		File temp = File.createTempFile(key, ".tmp", directory);
+		try {
+			try(OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))){
+				SerializationHelper.write(out, model);
+			}
+
+			//concurrent runs never read a partial model
+			Path target = new File(directory, key + EXTENSION).toPath();
+			try {
+				Files.move(temp.toPath(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) { //e.g. some network file systems
+				Files.move(temp.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp.toPath()); //left only if the model was not written
+		}
+
+		evict();
+	}
+
+	private synchronized void evict() throws IOException {
+		File[] entries = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		if(entries == null){
+			return;
+		}
+
+		long size = 0;
+		for(File entry: entries){
+			size += entry.length();
+		}
+
+		Arrays.sort(entries, Comparator.comparingLong(File::lastModified)); //least recently used first
+		for(File entry: entries){
+			if(size <= maxSize){
+				break;
+			}
+
+			size -= entry.length();
+			Files.deleteIfExists(entry.toPath());
+		}
+	}
+
+	private static MessageDigest getDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package main.utils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import main.training.entity.Predictions;
+
+/**
+ * Binary store of the predictions of every (configuration, fold) evaluation.
+ *
+ * Each record holds the model settings, the number of training releases and, per test instance,
+ * the actual class, the effort and the class distribution. Records are appended by concurrent evaluations.
+ * */
+public class PredictionStore implements Closeable {
+
+	private final DataOutputStream out;
+
+	/**
+	 * Opens the store for writing.
+	 *
+	 * @param path : path of the store file
+	 * @param resume : true to append to the records of an interrupted run, false to replace them
+	 * */
+	public PredictionStore(String path, boolean resume) throws IOException {
+		File file = new File(path);
+		if(resume && file.isFile()){
+			truncatePartialRecord(file);
+		}
+
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, resume)));
+	}
+
+	/**
+	 * Appends the predictions of a configuration on a fold.
+	 *
+	 * @param predictions : predictions to store
+	 * */
+	public synchronized void write(Predictions predictions) throws IOException {
+		out.writeUTF(predictions.getDataset());
+		out.writeUTF(predictions.getClassifier());
+		out.writeUTF(predictions.getBalancing());
+		out.writeUTF(predictions.getFeatureSelection());
+		out.writeUTF(predictions.getSensitivity());
+		out.writeInt(predictions.getNumTrainingReleases());
+
+		int numClasses = predictions.size() == 0 ? 0 : predictions.getDistributions()[0].length;
+		out.writeInt(predictions.size());
+		out.writeByte(numClasses);
+
+		for(int i=0; i<predictions.size(); i++){
+			out.writeByte(predictions.getActual()[i]);
+			out.writeDouble(predictions.getEffort()[i]);
+			for(double probability: predictions.getDistributions()[i]){
+				out.writeDouble(probability);
+			}
+		}
+
+		out.flush(); //an interrupted run loses at most the record being written
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Reads every record of a store.
+	 *
+	 * @param path : path of the store file
+	 *
+	 * @return : predictions in writing order
+	 * */
+	public static List<Predictions> read(String path) throws IOException {
+		List<Predictions> records = new ArrayList<>();
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))){
+			while(in.available() > 0){
+				records.add(readRecord(in));
+			}
+		}
+
+		return records;
+	}
+
+	/**
+	 * Removes the last record of a store if it was interrupted while writing.
+	 * */
+	private static void truncatePartialRecord(File file) throws IOException {
+		long complete = 0;
+
+		try(CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+			DataInputStream in = new DataInputStream(counter)){
+			while(in.available() > 0){
+				readRecord(in);
+				complete = counter.count;
+			}
+		} catch (EOFException e) {
+			//partial record: discarded
+		}
+
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+			raf.setLength(complete);
+		}
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+
+		private long count; //bytes read
+
+		private CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if(b != -1){
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if(n > 0){
+				count += n;
+			}
+			return n;
+		}
+	}
+
+	private static Predictions readRecord(DataInputStream in) throws IOException {
+		String dataset = in.readUTF();
+		String classifier = in.readUTF();
+		String balancing = in.readUTF();
+		String featureSelection = in.readUTF();
+		String sensitivity = in.readUTF();
+		int numTrainingReleases = in.readInt();
+
+		int size = in.readInt();
+		int numClasses = in.readByte();
+
+		int[] actual = new int[size];
+		double[] effort = new double[size];
+		double[][] distributions = new double[size][numClasses];
+		for(int i=0; i<size; i++){
+			actual[i] = in.readByte();
+			effort[i] = in.readDouble();
+			for(int c=0; c<numClasses; c++){
+				distributions[i][c] = in.readDouble();
+			}
+		}
+
+		return new Predictions(dataset, classifier, balancing, featureSelection, sensitivity, numTrainingReleases,
+				actual, effort, distributions);
+	}
+}
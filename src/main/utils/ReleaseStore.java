@@ -0,0 +1,193 @@
+package main.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import main.training.entity.Fold;
+import main.training.entity.SharedInstances;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Dataset kept on disk, one file per release, for the analyses that do not fit in memory.
+ *
+ * The releases are written one at a time and read back either as a whole (a walk-forward fold)
+ * or one instance at a time, so the memory is bounded by the largest fold instead of the whole dataset.
+ * Every instance is stored as its weight followed by its values, in binary: unlike the arff text the values
+ * are read back exactly, so the results do not change with the in-memory analysis.
+ * */
+public class ReleaseStore {
+
+	private final File directory;
+	private final String dataset;
+
+	private Instances structure; //header of every release
+	private final List<Integer> sizes = new ArrayList<>(); //instances per release
+	private final List<Integer> defective = new ArrayList<>(); //defective instances per release
+
+	/**
+	 * Handles the instances of a release, in file order.
+	 * */
+	public interface InstanceHandler {
+		void handle(Instance instance) throws Exception;
+	}
+
+	/**
+	 * @param outputPath : directory of output files
+	 * @param dataset : name of the dataset
+	 * */
+	public ReleaseStore(String outputPath, String dataset) throws IOException {
+		this.directory = new File(outputPath + dataset + "_releases");
+		this.dataset = dataset;
+
+		if(!directory.isDirectory() && !directory.mkdirs()){
+			throw new IOException("Cannot create the release store: " + directory);
+		}
+	}
+
+	/**
+	 * Appends a release to the store.
+	 *
+	 * @param release : instances of the release, with class index set
+	 * */
+	public void write(Instances release) throws IOException {
+		release.setClassIndex(release.numAttributes() - 1);
+
+		int yes = release.classAttribute().indexOfValue("Yes");
+		int count = 0;
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getFile(sizes.size()))))){
+			for(Instance instance: release){
+				out.writeDouble(instance.weight());
+				for(int a=0; a<release.numAttributes(); a++){
+					out.writeDouble(instance.value(a));
+				}
+
+				if((int) instance.classValue() == yes){
+					count++;
+				}
+			}
+		}
+
+		if(structure == null){
+			structure = new Instances(release, 0);
+		}
+		sizes.add(release.numInstances());
+		defective.add(count);
+	}
+
+	/**
+	 * @return : number of releases
+	 * */
+	public int size() {
+		return sizes.size();
+	}
+
+	/**
+	 * @return : empty instances with the header of the releases
+	 * */
+	public Instances getStructure() {
+		return new Instances(structure, 0);
+	}
+
+	public int getNumInstances(int release) {
+		return sizes.get(release);
+	}
+
+	public int getNumDefective(int release) {
+		return defective.get(release);
+	}
+
+	/**
+	 * @return : instances of every release
+	 * */
+	public int getTotalInstances() {
+		int total = 0;
+		for(int size: sizes){
+			total += size;
+		}
+
+		return total;
+	}
+
+	/**
+	 * Reads the instances of a release one at a time.
+	 *
+	 * @param release : index of the release
+	 * @param handler : handler of every instance
+	 * */
+	public void stream(int release, InstanceHandler handler) throws Exception {
+		Instances header = getStructure();
+		int numAttributes = header.numAttributes();
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(getFile(release))))){
+			for(int i=0; i<sizes.get(release); i++){
+				double weight = in.readDouble();
+				double[] values = new double[numAttributes];
+				for(int a=0; a<numAttributes; a++){
+					values[a] = in.readDouble();
+				}
+
+				Instance instance = new DenseInstance(weight, values);
+				instance.setDataset(header);
+				handler.handle(instance);
+			}
+		} catch (EOFException e) {
+			throw new IOException("Truncated release file: " + getFile(release), e);
+		}
+	}
+
+	/**
+	 * Loads a release in memory.
+	 *
+	 * @param release : index of the release
+	 *
+	 * @return : instances of the release
+	 * */
+	public Instances load(int release) throws Exception {
+		Instances data = getStructure();
+		stream(release, data::add);
+
+		return data;
+	}
+
+	/**
+	 * Loads a walk-forward fold: every release before the test one is the training set.
+	 *
+	 * @param testRelease : index of the test release (at least 1)
+	 *
+	 * @return : fold with the training set made of the loaded releases
+	 * */
+	public Fold loadFold(int testRelease) throws Exception {
+		SharedInstances training = new SharedInstances(load(0));
+		for(int i=1; i<testRelease; i++){
+			training = new SharedInstances(training, load(i));
+		}
+
+		return new Fold(testRelease, training, load(testRelease), getTotalInstances());
+	}
+
+	/**
+	 * Deletes the files of the store, including a release whose write failed.
+	 * */
+	public void delete() throws IOException {
+		for(int i=0; i<=sizes.size(); i++){
+			Files.deleteIfExists(getFile(i).toPath());
+		}
+		Files.deleteIfExists(directory.toPath());
+	}
+
+	private File getFile(int release) {
+		return new File(directory, dataset + "_R" + release + ".bin");
+	}
+}
@@ -0,0 +1,147 @@
+package main.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import main.training.entity.Configuration;
+
+/**
+ * Durable, incremental output of the Weka results.
+ *
+ * Every (configuration, fold) result is appended to a checkpoint file as soon as it is evaluated, preceded by the
+ * identifier of its cell in the grid. A run restarted after a crash skips the cells already in the checkpoint.
+ * When the grid is complete the checkpoint becomes the usual results file.
+ * */
+public class ResultsCheckpoint implements Closeable {
+
+	private final String dataset;
+	private final String resultPath;
+	private final File file;
+	private final Set<String> completed;
+	private final boolean resumed;
+
+	private final FileOutputStream stream;
+	private final Writer writer;
+
+	/**
+	 * Opens the checkpoint of an analysis, resuming a previous interrupted run if present.
+	 *
+	 * @param outputPath : directory of output files
+	 * @param dataset : name of the dataset
+	 * */
+	public ResultsCheckpoint(String outputPath, String dataset) throws IOException {
+		this.dataset = dataset;
+		this.resultPath = outputPath + dataset + "_Weka.csv";
+		this.file = new File(outputPath + dataset + "_Weka.checkpoint.csv");
+		this.completed = new HashSet<>();
+
+		this.resumed = file.isFile();
+		if(resumed){
+			resume();
+		}
+
+		this.stream = new FileOutputStream(file, true);
+		this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Checks if the result of a cell was saved by a previous run.
+	 *
+	 * @param cell : identifier of configuration and fold
+	 *
+	 * @return : true if the cell must not be evaluated again
+	 * */
+	public boolean isCompleted(String cell) {
+		return completed.contains(cell);
+	}
+
+	/**
+	 * @return : true if the checkpoint of a previous interrupted run was found
+	 * */
+	public boolean isResumed() {
+		return resumed;
+	}
+
+	/**
+	 * Saves the result of a cell on disk before returning.
+	 *
+	 * @param cell : identifier of configuration and fold
+	 * @param config : evaluated configuration
+	 * */
+	public synchronized void append(String cell, Configuration config) throws IOException {
+		writer.append(cell).append(",");
+		CSVManager.getInstance().appendWekaRow(writer, dataset, config);
+
+		writer.flush();
+		stream.getFD().sync();
+	}
+
+	/**
+	 * Writes the results file from the checkpoint, which is then deleted.
+	 * The rows are saved in the order they are evaluated (folds interleaved, most expensive configurations first):
+	 * they are sorted by fold and then by configuration in the grid, so every run writes the same file.
+	 * */
+	public synchronized void complete() throws IOException {
+		close();
+
+		List<String> rows = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		rows.sort(Comparator.comparingInt((String row) -> getCellField(row, 0)).thenComparingInt(row -> getCellField(row, 1)));
+
+		try(FileWriter fw = new FileWriter(resultPath)){
+			CSVManager.getInstance().appendWekaHeader(fw);
+
+			for(String row: rows){
+				fw.append(row.substring(row.indexOf(',') + 1)).append("\n"); //without the cell identifier
+			}
+		}
+
+		Files.delete(file.toPath());
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+
+	private static int getCellField(String row, int field) {
+		return Integer.parseInt(row.split("\\|", 3)[field]); //cell: fold|grid index|configuration
+	}
+
+	/**
+	 * Reads the cells of a previous run. A last row interrupted while writing is discarded.
+	 * */
+	private void resume() throws IOException {
+		byte[] content = Files.readAllBytes(file.toPath());
+
+		int end = content.length;
+		while(end > 0 && content[end - 1] != '\n'){
+			end--;
+		}
+
+		if(end < content.length){ //partial row
+			try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+				raf.setLength(end);
+			}
+		}
+
+		String rows = new String(content, 0, end, StandardCharsets.UTF_8);
+		for(String row: rows.split("\n")){
+			if(row.isEmpty()){
+				continue;
+			}
+
+			int separator = row.indexOf(',');
+			if(separator < 0){ //not written by append(): the results file could not be rebuilt
+				throw new IOException("Invalid row in checkpoint " + file + ": " + row);
+			}
+			completed.add(row.substring(0, separator));
+		}
+
+		LoggingUtils.logInt("Results resumed from checkpoint: ", completed.size());
+	}
+}